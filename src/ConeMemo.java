@@ -0,0 +1,292 @@
+import java.io.*;
+import java.util.*;
+
+/**
+ * Memo of pebbling costs for cones, the subgraphs made of a node and all of its ancestors.
+ * Regular graphs (pyramids, trees, layered circuits) contain the same cone many times, so
+ * each cone is brought into a canonical form and its exact pebble number is stored under it.
+ * Only cones of up to MAX_CONE_SIZE nodes are memoized: their configurations fit into an int,
+ * so the exact search runs in memory on a bitset. For larger ones it is too expensive and the
+ * structural bounds add nothing to those of the whole graph. No pebbling strategy is kept: the
+ * costs only serve as lower bounds, the upper bounds come from orders of the whole graph, into
+ * which the strategy of one cone cannot be spliced because cones overlap and share pebbles.
+ * The memo is bounded (least recently used entries are dropped) and can be saved to disk,
+ * so later runs on similar graphs start with the costs already known.
+ */
+class ConeMemo {
+    static final int MAX_CONE_SIZE = 12;
+    static final int MAX_ENTRIES = 10000;
+    static final int FORMAT_VERSION = 2;
+    static final File DEFAULT_FILE = new File(System.getProperty("user.home"), ".pebblegame/cones.bin");
+
+    private static ConeMemo shared;
+
+    static class Entry {
+        final int[] encoding;
+        final int pebbles;
+
+        Entry(int[] encoding, int pebbles) {
+            this.encoding = encoding;
+            this.pebbles = pebbles;
+        }
+    }
+
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /** The memo used by the UI, loaded from {@link #DEFAULT_FILE} on first use. */
+    public static synchronized ConeMemo shared() {
+        if (shared == null) {
+            shared = new ConeMemo();
+            if (DEFAULT_FILE.exists()) {
+                try {
+                    shared.load(DEFAULT_FILE);
+                } catch (IOException e) {
+                    System.err.println("Fehler beim Laden des Kegel-Caches: " + e.getMessage());
+                }
+            }
+        }
+        return shared;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    // ---------- canonical forms ----------
+
+    /**
+     * Bottom-up hash of every cone: a node's hash combines the sorted hashes of its predecessors.
+     * Isomorphic cones always get the same hash; equal hashes are confirmed by the canonical encoding.
+     */
+    static long[] coneHashes(int[][] predecessors, int[] topologicalOrder) {
+        long[] hashes = new long[predecessors.length];
+        for (int v : topologicalOrder) {
+            long[] children = new long[predecessors[v].length];
+            for (int i = 0; i < children.length; i++) {
+                children[i] = hashes[predecessors[v][i]];
+            }
+            Arrays.sort(children);
+            long h = 0x9E3779B97F4A7C15L + children.length;
+            for (long child : children) {
+                h = (h ^ child) * 0xFF51AFD7ED558CCDL;
+                h ^= h >>> 29;
+            }
+            hashes[v] = h;
+        }
+        return hashes;
+    }
+
+    /**
+     * Labels the cone of root by a depth-first search that visits predecessors in hash order and
+     * lists the predecessor labels of every label. Two cones with the same encoding are isomorphic,
+     * the labelling is the isomorphism. Returns null if the cone has more than MAX_CONE_SIZE nodes.
+     */
+    static int[] canonicalEncoding(int root, int[][] predecessors, long[] hashes) {
+        Map<Integer, Integer> labels = new HashMap<>();
+        Deque<Integer> pending = new ArrayDeque<>();
+        Set<Integer> cone = new HashSet<>();
+        pending.push(root);
+        cone.add(root);
+        while (!pending.isEmpty()) {
+            for (int u : predecessors[pending.pop()]) {
+                if (cone.add(u)) {
+                    if (cone.size() > MAX_CONE_SIZE) {
+                        return null;
+                    }
+                    pending.push(u);
+                }
+            }
+        }
+        label(root, predecessors, hashes, labels);
+
+        int[] byLabel = new int[cone.size()];
+        for (Map.Entry<Integer, Integer> entry : labels.entrySet()) {
+            byLabel[entry.getValue()] = entry.getKey();
+        }
+        int length = 1 + cone.size();
+        for (int v : cone) {
+            length += predecessors[v].length;
+        }
+        int[] encoding = new int[length];
+        int position = 0;
+        encoding[position++] = cone.size();
+        for (int v : byLabel) {
+            int[] predecessorLabels = new int[predecessors[v].length];
+            for (int i = 0; i < predecessorLabels.length; i++) {
+                predecessorLabels[i] = labels.get(predecessors[v][i]);
+            }
+            Arrays.sort(predecessorLabels);
+            encoding[position++] = predecessorLabels.length;
+            for (int label : predecessorLabels) {
+                encoding[position++] = label;
+            }
+        }
+        return encoding;
+    }
+
+    private static void label(int v, int[][] predecessors, long[] hashes, Map<Integer, Integer> labels) {
+        Integer[] ordered = new Integer[predecessors[v].length];
+        for (int i = 0; i < ordered.length; i++) {
+            ordered[i] = predecessors[v][i];
+        }
+        Arrays.sort(ordered, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        for (int u : ordered) {
+            if (!labels.containsKey(u)) {
+                label(u, predecessors, hashes, labels);
+            }
+        }
+        labels.put(v, labels.size());
+    }
+
+    private static long key(int[] encoding) {
+        long h = 1125899906842597L;
+        for (int value : encoding) {
+            h = 31 * h + value;
+        }
+        return h ^ (h >>> 32);
+    }
+
+    // ---------- costs ----------
+
+    /** Pebble number of the cone of root, computed on a miss; null if the cone is too large to memoize. */
+    public Entry costOf(int root, int[][] predecessors, long[] hashes) {
+        int[] encoding = canonicalEncoding(root, predecessors, hashes);
+        if (encoding == null) {
+            return null;
+        }
+        long key = key(encoding);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && Arrays.equals(entry.encoding, encoding)) {
+                return entry;
+            }
+        }
+        Entry entry = compute(encoding);
+        synchronized (this) {
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    private static Entry compute(int[] encoding) {
+        int size = encoding[0];
+        Graph cone = new Graph();
+        State[] states = new State[size];
+        int[] predecessorMasks = new int[size];
+        Graph.Batch batch = cone.beginBatch();
+        for (int label = 0; label < size; label++) {
+            states[label] = new State(0, 0, label, Graph.NODE_RADIUS);
+            batch.addNode(states[label]);
+        }
+        int position = 1;
+        for (int label = 0; label < size; label++) {
+            int count = encoding[position++];
+            for (int i = 0; i < count; i++) {
+                int predecessor = encoding[position++];
+                batch.addEdge(states[predecessor], states[label]);
+                predecessorMasks[label] |= 1 << predecessor;
+            }
+        }
+        batch.commit();
+
+        // without a time budget only the structural bounds and the greedy orders are tried
+        PebbleHeuristic.Result bounds = new PebbleHeuristic(cone).run(0, 1, null);
+        int pebbles = bounds.isOptimal() ? bounds.lowerBound : minimumPebbles(predecessorMasks, bounds.lowerBound);
+        return new Entry(encoding, pebbles);
+    }
+
+    /**
+     * Same search as {@link PebbleSearch}, but a configuration of at most MAX_CONE_SIZE nodes is an int
+     * (bit v: v carries a pebble, bit size + v: v has been pebbled) and the visited set a bitset over all of them.
+     */
+    static int minimumPebbles(int[] predecessorMasks, int lowerBound) {
+        int size = predecessorMasks.length;
+        int pebbledMask = (1 << size) - 1;
+        int goal = pebbledMask << size;
+        long[] visited = new long[((1 << (2 * size)) + 63) >>> 6];
+        for (int pebbles = Math.max(1, lowerBound); pebbles < size; pebbles++) {
+            Arrays.fill(visited, 0);
+            int[] frontier = {0};
+            int frontierSize = 1;
+            visited[0] = 1;
+            while (frontierSize > 0) {
+                int[] next = new int[Math.max(16, frontierSize * 2)];
+                int nextSize = 0;
+                for (int i = 0; i < frontierSize; i++) {
+                    int configuration = frontier[i];
+                    boolean placeable = Integer.bitCount(configuration & pebbledMask) < pebbles;
+                    for (int v = 0; v < size; v++) {
+                        int following;
+                        if ((configuration & (1 << v)) != 0) {
+                            following = configuration & ~(1 << v);
+                        } else if (placeable && (configuration & predecessorMasks[v]) == predecessorMasks[v]) {
+                            following = configuration | (1 << v) | (1 << (size + v));
+                            if ((following & goal) == goal) {
+                                return pebbles;
+                            }
+                        } else {
+                            continue;
+                        }
+                        if ((visited[following >>> 6] & (1L << following)) == 0) {
+                            visited[following >>> 6] |= 1L << following;
+                            if (nextSize == next.length) {
+                                next = Arrays.copyOf(next, nextSize * 2);
+                            }
+                            next[nextSize++] = following;
+                        }
+                    }
+                }
+                frontier = next;
+                frontierSize = nextSize;
+            }
+        }
+        return size;
+    }
+
+    // ---------- persistence ----------
+
+    public synchronized void save(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries.values()) {
+                writeArray(out, entry.encoding);
+                out.writeInt(entry.pebbles);
+            }
+        }
+    }
+
+    public synchronized void load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException("unbekanntes Format in " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int[] encoding = readArray(in);
+                entries.put(key(encoding), new Entry(encoding, in.readInt()));
+            }
+        }
+    }
+
+    private static void writeArray(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readArray(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+}
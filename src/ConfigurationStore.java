@@ -0,0 +1,424 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Visited set for pebbling configurations that lives outside the Java heap.
+ * Keys are fixed-width bit sets packed into longs. The store is split into segments by hash, each
+ * an open-addressing hash table in a direct buffer; when the resident segments exceed the memory
+ * budget the least recently used one is written to the work directory and dropped.
+ * Duplicates are detected late: {@link #offer} only appends a key to the bucket of its segment,
+ * {@link #merge} then goes through the segments one by one and adds the buckets, so every segment
+ * is read and written at most once per merge even if the store is much larger than the budget.
+ * Not thread-safe.
+ */
+class ConfigurationStore implements Closeable {
+    static final int SEGMENT_BITS = 8;
+    static final int SEGMENT_COUNT = 1 << SEGMENT_BITS;
+    static final int INITIAL_CAPACITY = 1024;
+    static final String META_FILE = "store.meta";
+
+    private static class Segment {
+        int capacity;
+        int size;
+        boolean containsZero;
+        ByteBuffer buffer; // null while spilled to disk
+        boolean dirty; // changed since it was last written to its spill file
+        ByteBuffer pending; // offered keys that are not yet in the bucket file
+    }
+
+    private final int keyWords;
+    private final int keyBytes;
+    private final File directory;
+    private final long tableBudget;
+    private final int pendingBytes;
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+    private final LinkedHashMap<Integer, Segment> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes = 0;
+    private long size = 0;
+
+    /** A quarter of the memory budget buffers offered keys, the rest holds resident segments. */
+    public ConfigurationStore(int keyWords, File directory, long memoryBudget) {
+        this.keyWords = keyWords;
+        this.keyBytes = keyWords * Long.BYTES;
+        this.directory = directory;
+        this.pendingBytes = (int) Math.min(1 << 20, Math.max(1, memoryBudget / 4 / SEGMENT_COUNT / keyBytes)) * keyBytes;
+        this.tableBudget = memoryBudget - (long) pendingBytes * SEGMENT_COUNT;
+        directory.mkdirs();
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment();
+            segments[i].capacity = INITIAL_CAPACITY;
+        }
+    }
+
+    public int getKeyWords() {
+        return keyWords;
+    }
+
+    /** Number of keys added by merges so far. */
+    public long size() {
+        return size;
+    }
+
+    /** Remembers the key for the next {@link #merge}. */
+    public void offer(long[] key) throws IOException {
+        int index = (int) (hash(key) >>> (64 - SEGMENT_BITS));
+        Segment segment = segments[index];
+        if (segment.pending == null) {
+            segment.pending = ByteBuffer.allocateDirect(pendingBytes);
+        } else if (segment.pending.remaining() < keyBytes) {
+            appendPending(index);
+        }
+        for (long word : key) {
+            segment.pending.putLong(word);
+        }
+    }
+
+    /**
+     * Adds all keys offered since the last merge, segment by segment, and writes those that were
+     * not in the store yet to the given output. Returns their number.
+     */
+    public long merge(DataOutput newKeys) throws IOException {
+        long added = 0;
+        long[] key = new long[keyWords];
+        for (int index = 0; index < SEGMENT_COUNT; index++) {
+            Segment segment = segments[index];
+            File bucket = bucketFile(directory, index);
+            boolean hasPending = segment.pending != null && segment.pending.position() > 0;
+            if (!hasPending && !bucket.exists()) {
+                continue;
+            }
+            load(index);
+            if (bucket.exists()) {
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(bucket), 1 << 16))) {
+                    while (readKey(in, key)) {
+                        added += addNew(index, key, newKeys);
+                    }
+                }
+                bucket.delete();
+            }
+            if (hasPending) {
+                segment.pending.flip();
+                while (segment.pending.hasRemaining()) {
+                    for (int w = 0; w < keyWords; w++) {
+                        key[w] = segment.pending.getLong();
+                    }
+                    added += addNew(index, key, newKeys);
+                }
+                segment.pending.clear();
+            }
+        }
+        return added;
+    }
+
+    private int addNew(int index, long[] key, DataOutput newKeys) throws IOException {
+        Segment segment = segments[index];
+        long hash = hash(key);
+        if (isZero(key)) {
+            if (segment.containsZero) {
+                return 0;
+            }
+            segment.containsZero = true;
+        } else {
+            if (find(segment, key, hash) >= 0) {
+                return 0;
+            }
+            if ((segment.size + 1) * 2L > segment.capacity) {
+                grow(index, segment);
+            }
+            insert(segment.buffer, segment.capacity, key, hash);
+            segment.size++;
+        }
+        segment.dirty = true;
+        size++;
+        for (long word : key) {
+            newKeys.writeLong(word);
+        }
+        return 1;
+    }
+
+    private boolean readKey(DataInputStream in, long[] key) throws IOException {
+        try {
+            for (int w = 0; w < keyWords; w++) {
+                key[w] = in.readLong();
+            }
+            return true;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    private int find(Segment segment, long[] key, long hash) {
+        int mask = segment.capacity - 1;
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            int offset = slot * keyBytes;
+            if (isEmpty(segment.buffer, offset)) {
+                return -1;
+            }
+            if (equals(segment.buffer, offset, key)) {
+                return slot;
+            }
+        }
+    }
+
+    private void insert(ByteBuffer buffer, int capacity, long[] key, long hash) {
+        int mask = capacity - 1;
+        int slot = (int) hash & mask;
+        while (!isEmpty(buffer, slot * keyBytes)) {
+            slot = (slot + 1) & mask;
+        }
+        int offset = slot * keyBytes;
+        for (int w = 0; w < keyWords; w++) {
+            buffer.putLong(offset + w * Long.BYTES, key[w]);
+        }
+    }
+
+    private void grow(int index, Segment segment) throws IOException {
+        int capacity = segment.capacity * 2;
+        if ((long) capacity * keyBytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("segment " + index + " is full, the key space is too large for "
+                    + SEGMENT_COUNT + " segments");
+        }
+        ByteBuffer buffer = allocate(capacity);
+        long[] key = new long[keyWords];
+        for (int slot = 0; slot < segment.capacity; slot++) {
+            int offset = slot * keyBytes;
+            if (!isEmpty(segment.buffer, offset)) {
+                for (int w = 0; w < keyWords; w++) {
+                    key[w] = segment.buffer.getLong(offset + w * Long.BYTES);
+                }
+                insert(buffer, capacity, key, hash(key));
+            }
+        }
+        residentBytes += (long) (capacity - segment.capacity) * keyBytes;
+        segment.buffer = buffer;
+        segment.capacity = capacity;
+        evictOver(index);
+    }
+
+    private boolean isEmpty(ByteBuffer buffer, int offset) {
+        for (int w = 0; w < keyWords; w++) {
+            if (buffer.getLong(offset + w * Long.BYTES) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean equals(ByteBuffer buffer, int offset, long[] key) {
+        for (int w = 0; w < keyWords; w++) {
+            if (buffer.getLong(offset + w * Long.BYTES) != key[w]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isZero(long[] key) {
+        for (long word : key) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long hash(long[] key) {
+        long h = 0x9E3779B97F4A7C15L * keyWords;
+        for (long word : key) {
+            h ^= word;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+        }
+        return h;
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * keyBytes).order(ByteOrder.nativeOrder());
+    }
+
+    // ---------- spilling ----------
+
+    private File segmentFile(File directory, int index) {
+        return new File(directory, "segment-" + index + ".bin");
+    }
+
+    private File bucketFile(File directory, int index) {
+        return new File(directory, "bucket-" + index + ".bin");
+    }
+
+    private void appendPending(int index) throws IOException {
+        ByteBuffer pending = segments[index].pending;
+        if (pending == null || pending.position() == 0) {
+            return;
+        }
+        pending.flip();
+        try (FileChannel channel = FileChannel.open(bucketFile(directory, index).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (pending.hasRemaining()) {
+                channel.write(pending);
+            }
+        }
+        pending.clear();
+    }
+
+    private Segment load(int index) throws IOException {
+        Segment segment = segments[index];
+        if (segment.buffer != null) {
+            resident.get(index); // mark as recently used
+            return segment;
+        }
+        segment.buffer = allocate(segment.capacity);
+        File file = segmentFile(directory, index);
+        if (file.exists()) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                while (segment.buffer.hasRemaining() && channel.read(segment.buffer) >= 0) {
+                }
+            }
+            segment.buffer.clear();
+        }
+        segment.dirty = false;
+        resident.put(index, segment);
+        residentBytes += (long) segment.capacity * keyBytes;
+        evictOver(index);
+        return segment;
+    }
+
+    private void evictOver(int keep) throws IOException {
+        Iterator<Map.Entry<Integer, Segment>> iterator = resident.entrySet().iterator();
+        while (residentBytes > tableBudget && iterator.hasNext()) {
+            Map.Entry<Integer, Segment> entry = iterator.next();
+            if (entry.getKey() == keep) {
+                continue;
+            }
+            Segment segment = entry.getValue();
+            if (segment.dirty) {
+                write(segment, segmentFile(directory, entry.getKey()));
+            }
+            residentBytes -= (long) segment.capacity * keyBytes;
+            segment.buffer = null;
+            iterator.remove();
+        }
+    }
+
+    // always a new file that replaces the old one, checkpoints may still link to the old one
+    private void write(Segment segment, File file) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        ByteBuffer view = segment.buffer.duplicate();
+        view.clear();
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (view.hasRemaining()) {
+                channel.write(view);
+            }
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        segment.dirty = false;
+    }
+
+    private static void link(File source, File target) throws IOException {
+        target.delete();
+        try {
+            Files.createLink(target.toPath(), source.toPath());
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(source.toPath(), target.toPath());
+        }
+    }
+
+    // ---------- checkpoints ----------
+
+    /**
+     * Writes a complete, self-contained copy of the store into the given directory. Only segments
+     * changed since they were last written are written again; everything else is hard linked.
+     */
+    public void checkpoint(File target) throws IOException {
+        target.mkdirs();
+        long[] bucketLengths = new long[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            Segment segment = segments[i];
+            if (segment.buffer != null && segment.dirty) {
+                write(segment, segmentFile(directory, i)); // segment stays resident and clean
+            }
+            if (segmentFile(directory, i).exists()) {
+                link(segmentFile(directory, i), segmentFile(target, i));
+            }
+            // buckets only grow until the next merge, the recorded length marks the part that belongs to the checkpoint
+            appendPending(i);
+            File bucket = bucketFile(directory, i);
+            if (bucket.exists()) {
+                bucketLengths[i] = bucket.length();
+                link(bucket, bucketFile(target, i));
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(new File(target, META_FILE))))) {
+            out.writeInt(keyWords);
+            out.writeLong(size);
+            for (int i = 0; i < SEGMENT_COUNT; i++) {
+                out.writeInt(segments[i].capacity);
+                out.writeInt(segments[i].size);
+                out.writeBoolean(segments[i].containsZero);
+                out.writeLong(bucketLengths[i]);
+            }
+        }
+    }
+
+    /** Recreates a store from a checkpoint; its segments are linked into the work directory and loaded lazily. */
+    public static ConfigurationStore restore(File checkpoint, File directory, long memoryBudget) throws IOException {
+        ConfigurationStore store;
+        long[] bucketLengths = new long[SEGMENT_COUNT];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(new File(checkpoint, META_FILE))))) {
+            store = new ConfigurationStore(in.readInt(), directory, memoryBudget);
+            store.size = in.readLong();
+            for (int i = 0; i < SEGMENT_COUNT; i++) {
+                Segment segment = store.segments[i];
+                segment.capacity = in.readInt();
+                segment.size = in.readInt();
+                segment.containsZero = in.readBoolean();
+                bucketLengths[i] = in.readLong();
+            }
+        }
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            File source = store.segmentFile(checkpoint, i);
+            File spill = store.segmentFile(directory, i);
+            if (source.exists()) {
+                link(source, spill);
+            } else {
+                spill.delete();
+            }
+            File bucketSource = store.bucketFile(checkpoint, i);
+            File bucket = store.bucketFile(directory, i);
+            if (bucketSource.exists()) {
+                link(bucketSource, bucket);
+                try (FileChannel channel = FileChannel.open(bucket.toPath(), StandardOpenOption.WRITE)) {
+                    channel.truncate(bucketLengths[i]);
+                }
+            } else {
+                bucket.delete();
+            }
+        }
+        return store;
+    }
+
+    @Override
+    public void close() {
+        for (Segment segment : segments) {
+            segment.buffer = null;
+            segment.pending = null;
+        }
+        resident.clear();
+        residentBytes = 0;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segmentFile(directory, i).delete();
+            bucketFile(directory, i).delete();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Compact adjacency of an imported graph: the successors of node i are
+ * targets[offsets[i] .. offsets[i + 1]), sorted and without duplicates.
+ * Node i was called names[i] in the source file.
+ */
+class CsrGraph {
+    static final int LAYOUT_SPACING = 80;
+
+    final int nodeCount;
+    final int[] offsets;
+    final int[] targets;
+    final String[] names;
+
+    /** Builds the rows from parallel arrays of edge sources and targets. */
+    public CsrGraph(String[] names, int[] sources, int[] edgeTargets, int edgeCount) {
+        this.nodeCount = names.length;
+        this.names = names;
+        int[] counts = new int[nodeCount + 1];
+        for (int i = 0; i < edgeCount; i++) {
+            counts[sources[i] + 1]++;
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            counts[i + 1] += counts[i];
+        }
+        int[] rows = new int[edgeCount];
+        int[] fill = Arrays.copyOf(counts, nodeCount);
+        for (int i = 0; i < edgeCount; i++) {
+            rows[fill[sources[i]]++] = edgeTargets[i];
+        }
+
+        // sort every row and drop parallel edges
+        offsets = new int[nodeCount + 1];
+        int size = 0;
+        for (int v = 0; v < nodeCount; v++) {
+            offsets[v] = size;
+            Arrays.sort(rows, counts[v], counts[v + 1]);
+            for (int i = counts[v]; i < counts[v + 1]; i++) {
+                if (i == counts[v] || rows[i] != rows[i - 1]) {
+                    rows[size++] = rows[i];
+                }
+            }
+        }
+        offsets[nodeCount] = size;
+        targets = Arrays.copyOf(rows, size);
+    }
+
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Replaces the contents of the editable graph in one batch. Imported files carry no positions,
+     * so nodes are laid out in layers by their depth; nodes on cycles end up in one extra layer.
+     */
+    public void copyInto(Graph graph) {
+        int[] layer = layers();
+        int[] column = new int[nodeCount];
+        int[] used = new int[nodeCount + 1];
+        for (int v = 0; v < nodeCount; v++) {
+            column[v] = used[layer[v]]++;
+        }
+
+        State[] states = new State[nodeCount];
+        Graph.Batch batch = graph.beginBatch().removeNodes(graph.getStates());
+        for (int v = 0; v < nodeCount; v++) {
+            states[v] = new State(LAYOUT_SPACING * (column[v] + 1), LAYOUT_SPACING * (layer[v] + 1), v, Graph.NODE_RADIUS);
+            batch.addNode(states[v]);
+        }
+        for (int v = 0; v < nodeCount; v++) {
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                if (targets[i] != v) { // the editor has no self-loops
+                    batch.addEdge(states[v], states[targets[i]]);
+                }
+            }
+        }
+        batch.commit();
+        graph.currentNodeNumber = nodeCount;
+    }
+
+    // longest path from a source, by Kahn
+    private int[] layers() {
+        int[] missing = new int[nodeCount];
+        for (int target : targets) {
+            missing[target]++;
+        }
+        int[] layer = new int[nodeCount];
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int v = 0; v < nodeCount; v++) {
+            if (missing[v] == 0) {
+                ready.add(v);
+            }
+        }
+        int deepest = 0;
+        int reached = 0;
+        while (!ready.isEmpty()) {
+            int v = ready.poll();
+            reached++;
+            deepest = Math.max(deepest, layer[v]);
+            for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                int w = targets[i];
+                layer[w] = Math.max(layer[w], layer[v] + 1);
+                if (--missing[w] == 0) {
+                    ready.add(w);
+                }
+            }
+        }
+        if (reached < nodeCount) {
+            for (int v = 0; v < nodeCount; v++) {
+                if (missing[v] > 0) {
+                    layer[v] = deepest + 1;
+                }
+            }
+        }
+        return layer;
+    }
+}
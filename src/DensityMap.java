@@ -0,0 +1,168 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Overview rendering for zoomed out graphs: edges are rasterized into a per-pixel count and
+ * shaded by density, nodes become single pixels. The edge layer is cached and only rebuilt
+ * when the graph changes or the zoom level does; panning just moves the cached image.
+ */
+class DensityMap {
+    static final int MAX_SAMPLES_PER_EDGE = 16;
+    // while zooming the old image is scaled, the map is only rebuilt once the wheel rests
+    static final int REBUILD_DELAY_MILLIS = 150;
+    static final int MAX_IMAGE_SIZE = 4096;
+
+    private final Timer rebuildTimer;
+    private boolean rebuildRequested = false;
+
+    private BufferedImage image;
+    private int[] counts;
+    private int[] edgePixels;
+    private int width, height;
+    private double originX, originY, scale; // graph position of the top left pixel
+    private boolean wholeGraph;
+    private int builtModification = -1;
+
+    public DensityMap(JComponent component) {
+        rebuildTimer = new Timer(REBUILD_DELAY_MILLIS, e -> {
+            rebuildRequested = true;
+            component.repaint();
+        });
+        rebuildTimer.setRepeats(false);
+    }
+
+    public void draw(Graphics2D g, Graph graph, AffineTransform viewport, int viewWidth, int viewHeight) {
+        if (graph.getStates().isEmpty()) {
+            return;
+        }
+        boolean zoomed = image != null && graph.modificationCount == builtModification && viewport.getScaleX() != scale;
+        if (zoomed && !rebuildRequested) {
+            rebuildTimer.restart();
+        } else if (rebuildRequested || graph.modificationCount != builtModification || viewport.getScaleX() != scale
+                || !covers(viewport, viewWidth, viewHeight)) {
+            rebuildRequested = false;
+            build(graph, viewport, viewWidth, viewHeight);
+        }
+
+        // nodes are drawn on a fresh copy of the edge layer, their colour changes while pebbling
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        System.arraycopy(edgePixels, 0, pixels, 0, pixels.length);
+        for (State state : graph.getStates()) {
+            int px = (int) ((state.x - originX) * scale);
+            int py = (int) ((state.y - originY) * scale);
+            if (px >= 0 && py >= 0 && px < width && py < height) {
+                pixels[py * width + px] = nodeColor(state);
+            }
+        }
+        Point2D screen = viewport.transform(new Point2D.Double(originX, originY), null);
+        double zoom = viewport.getScaleX() / scale;
+        g.drawImage(image, (int) Math.round(screen.getX()), (int) Math.round(screen.getY()),
+                (int) Math.round(width * zoom), (int) Math.round(height * zoom), null);
+    }
+
+    private static int nodeColor(State state) {
+        if (state.currentlyPebbled) {
+            return Color.blue.getRGB();
+        }
+        if (state.hasBeenPebbled) {
+            return Color.green.darker().getRGB();
+        }
+        return Color.black.getRGB();
+    }
+
+    private boolean covers(AffineTransform viewport, int viewWidth, int viewHeight) {
+        if (image == null) {
+            return false;
+        }
+        if (wholeGraph) {
+            return true;
+        }
+        Point2D topLeft = toGraph(viewport, 0, 0);
+        Point2D bottomRight = toGraph(viewport, viewWidth, viewHeight);
+        return topLeft.getX() >= originX && topLeft.getY() >= originY
+                && bottomRight.getX() <= originX + width / scale && bottomRight.getY() <= originY + height / scale;
+    }
+
+    private static Point2D toGraph(AffineTransform viewport, double x, double y) {
+        try {
+            return viewport.inverseTransform(new Point2D.Double(x, y), null);
+        } catch (NoninvertibleTransformException e) {
+            return new Point2D.Double(x, y);
+        }
+    }
+
+    private void build(Graph graph, AffineTransform viewport, int viewWidth, int viewHeight) {
+        scale = viewport.getScaleX();
+        builtModification = graph.modificationCount;
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (State state : graph.getStates()) {
+            minX = Math.min(minX, state.x);
+            minY = Math.min(minY, state.y);
+            maxX = Math.max(maxX, state.x);
+            maxY = Math.max(maxY, state.y);
+        }
+        int graphWidth = (int) Math.ceil((maxX - minX) * scale) + 1;
+        int graphHeight = (int) Math.ceil((maxY - minY) * scale) + 1;
+        wholeGraph = graphWidth <= MAX_IMAGE_SIZE && graphHeight <= MAX_IMAGE_SIZE;
+        if (wholeGraph) {
+            originX = minX;
+            originY = minY;
+            resize(graphWidth, graphHeight);
+        } else {
+            // too large for one image at this zoom level, only the visible part is rasterized
+            Point2D topLeft = toGraph(viewport, 0, 0);
+            originX = topLeft.getX();
+            originY = topLeft.getY();
+            resize(Math.max(1, Math.min(viewWidth, MAX_IMAGE_SIZE)), Math.max(1, Math.min(viewHeight, MAX_IMAGE_SIZE)));
+        }
+
+        int max = 0;
+        for (Edge edge : graph.getEdges()) {
+            double x0 = (edge.startState.x - originX) * scale;
+            double y0 = (edge.startState.y - originY) * scale;
+            double dx = (edge.endState.x - originX) * scale - x0;
+            double dy = (edge.endState.y - originY) * scale - y0;
+            double length = Math.max(Math.abs(dx), Math.abs(dy));
+            int samples = Math.max(1, Math.min(MAX_SAMPLES_PER_EDGE, (int) length));
+            int weight = Math.max(1, (int) (length / samples));
+            double stepX = dx / samples, stepY = dy / samples;
+            for (int i = 0; i <= samples; i++, x0 += stepX, y0 += stepY) {
+                int px = (int) x0;
+                int py = (int) y0;
+                if (px >= 0 && py >= 0 && px < width && py < height) {
+                    int count = counts[py * width + px] += weight;
+                    max = Math.max(max, count);
+                }
+            }
+        }
+
+        double logMax = Math.log1p(max);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                edgePixels[i] = 0;
+            } else {
+                int gray = (int) (220 - 200 * Math.log1p(counts[i]) / logMax);
+                edgePixels[i] = 0xFF000000 | gray << 16 | gray << 8 | gray;
+            }
+        }
+    }
+
+    private void resize(int width, int height) {
+        if (image == null || this.width != width || this.height != height) {
+            this.width = width;
+            this.height = height;
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            counts = new int[width * height];
+            edgePixels = new int[width * height];
+        } else {
+            Arrays.fill(counts, 0);
+        }
+    }
+}
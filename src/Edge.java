@@ -4,8 +4,35 @@ import java.util.Set;
 class Edge {
     State startState, endState;
 
+    // set while a batch commit compacts the adjacency lists
+    boolean removed = false;
+
     public Edge(State startState, State endState) {
         this.startState = startState;
         this.endState = endState;
     }
+
+    /** Packs the ids of both end points into one long, used to find parallel edges. */
+    static long key(State startState, State endState) {
+        return ((long) startState.id << 32) | (endState.id & 0xFFFFFFFFL);
+    }
+
+    long key() {
+        return key(startState, endState);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Edge)) {
+            return false;
+        }
+        Edge other = (Edge) o;
+        return startState == other.startState && endState == other.endState;
+    }
+
+    @Override
+    public int hashCode() {
+        // Long.hashCode would collide for every pair with the same start ^ end
+        return (int) ((key() * 0x9E3779B97F4A7C15L) >>> 32);
+    }
 }
@@ -5,41 +5,194 @@ import java.util.stream.Collectors;
 class Graph {
     static final int NODE_RADIUS = 30;
     private Set<State> states;
-    private Set<Edge> edges;
+    private Map<Long, Edge> edges;
+    private List<GraphListener> listeners;
 
     public boolean isValid;
 
     int currentNodeNumber = 0;
+    int modificationCount = 0;
+    GraphAnalysis analysis; // set while an incremental analysis is attached
 
     public Graph() {
         states = new HashSet<>();
-        edges = new HashSet<>();
+        edges = new HashMap<>();
+        listeners = new ArrayList<>();
         isValid = true;
     }
 
+    /**
+     * Collects node and edge changes and applies them in one go on {@link #commit()}.
+     * Adjacency lists are compacted once per touched node instead of once per removed edge,
+     * parallel edges are dropped and listeners are notified a single time.
+     */
+    class Batch {
+        private final Set<State> addedStates = new HashSet<>();
+        private final Set<State> removedStates = new HashSet<>();
+        private final Map<Long, Edge> addedEdges = new LinkedHashMap<>();
+        private final Set<Edge> removedEdges = new HashSet<>();
+        private final Map<State, int[]> moves = new HashMap<>();
+        private final Set<State> affected = new HashSet<>();
+        private boolean structureChanged = false;
+
+        public Batch addNode(State state) {
+            removedStates.remove(state);
+            addedStates.add(state);
+            return this;
+        }
+
+        public Batch removeNode(State state) {
+            addedStates.remove(state);
+            removedStates.add(state);
+            return this;
+        }
+
+        public Batch removeNodes(Collection<State> states) {
+            for (State state : states) {
+                removeNode(state);
+            }
+            return this;
+        }
+
+        public Batch addEdge(State startState, State endState) {
+            return addEdge(new Edge(startState, endState));
+        }
+
+        public Batch addEdge(Edge edge) {
+            Edge existing = edges.get(edge.key());
+            if (edge.equals(existing)) {
+                removedEdges.remove(existing);
+            } else {
+                addedEdges.putIfAbsent(edge.key(), edge);
+            }
+            return this;
+        }
+
+        public Batch removeEdge(Edge edge) {
+            // an equal edge may be a different object, only the stored one is in the adjacency lists
+            Edge pending = addedEdges.get(edge.key());
+            if (edge.equals(pending)) {
+                addedEdges.remove(edge.key());
+            } else {
+                Edge stored = edges.get(edge.key());
+                if (edge.equals(stored)) {
+                    removedEdges.add(stored);
+                }
+            }
+            return this;
+        }
+
+        public Batch moveNodes(Collection<State> states, int dx, int dy) {
+            for (State state : states) {
+                int[] delta = moves.computeIfAbsent(state, s -> new int[2]);
+                delta[0] += dx;
+                delta[1] += dy;
+            }
+            return this;
+        }
+
+        public void commit() {
+            for (Map.Entry<State, int[]> move : moves.entrySet()) {
+                State state = move.getKey();
+                state.x += move.getValue()[0];
+                state.y += move.getValue()[1];
+                affected.add(state);
+            }
+            for (State state : removedStates) {
+                if (states.remove(state)) {
+                    removedEdges.addAll(state.incomingEdges);
+                    removedEdges.addAll(state.outgoingEdges);
+                    affected.add(state);
+                    structureChanged = true;
+                }
+            }
+            for (State state : addedStates) {
+                if (states.add(state)) {
+                    affected.add(state);
+                    structureChanged = true;
+                }
+            }
+
+            // removed edges are only marked here, every adjacency list is compacted once afterwards
+            Set<State> touched = new HashSet<>();
+            for (Edge edge : removedEdges) {
+                Edge stored = edges.get(edge.key());
+                if (edge.equals(stored) && !stored.removed) {
+                    edges.remove(stored.key());
+                    stored.removed = true;
+                    touched.add(stored.startState);
+                    touched.add(stored.endState);
+                }
+            }
+            if (!touched.isEmpty()) {
+                for (State state : touched) {
+                    if (!removedStates.contains(state)) {
+                        state.incomingEdges.removeIf(edge -> edge.removed);
+                        state.outgoingEdges.removeIf(edge -> edge.removed);
+                    }
+                }
+                affected.addAll(touched);
+                structureChanged = true;
+            }
+
+            for (Edge edge : addedEdges.values()) {
+                if (!states.contains(edge.startState) || !states.contains(edge.endState)) {
+                    continue;
+                }
+                edge.removed = false;
+                if (edges.putIfAbsent(edge.key(), edge) != null) {
+                    continue;
+                }
+                edge.startState.outgoingEdges.add(edge);
+                edge.endState.incomingEdges.add(edge);
+                affected.add(edge.startState);
+                affected.add(edge.endState);
+                structureChanged = true;
+            }
+
+            if (!affected.isEmpty()) {
+                modificationCount++;
+                for (GraphListener listener : listeners) {
+                    listener.graphChanged(affected, structureChanged);
+                }
+            }
+        }
+    }
+
+    public Batch beginBatch() {
+        return new Batch();
+    }
+
+    public void addGraphListener(GraphListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeGraphListener(GraphListener listener) {
+        listeners.remove(listener);
+    }
+
     public Set<State> getStates() {
-        return this.states;
+        return Collections.unmodifiableSet(this.states);
     }
     public void addNode(State state) {
-        this.states.add(state);
+        beginBatch().addNode(state).commit();
     }
 
     public void removeNode(State state) {
-        this.states.remove(state);
+        beginBatch().removeNode(state).commit();
     }
 
-    public Set<Edge> getEdges() {
-        return this.edges;
+    public Collection<Edge> getEdges() {
+        return Collections.unmodifiableCollection(this.edges.values());
+    }
+    public Edge getEdge(State startState, State endState) {
+        return edges.get(Edge.key(startState, endState));
     }
     public void addEdge(Edge edge) {
-        edge.startState.outgoingEdges.add(edge);
-        edge.endState.incomingEdges.add(edge);
-        this.edges.add(edge);
+        beginBatch().addEdge(edge).commit();
     }
     public void removeEdge(Edge edge) {
-        edge.startState.outgoingEdges.remove(edge);
-        edge.endState.incomingEdges.remove(edge);
-        this.edges.remove(edge);
+        beginBatch().removeEdge(edge).commit();
     }
 
     public void initializeStateIndices() {
@@ -51,6 +204,9 @@ class Graph {
     }
 
     public String validate() {
+        if (analysis != null) {
+            return analysis.validate();
+        }
         isValid = false;
         if (states.size()==0) {
             isValid = true;
@@ -70,17 +226,32 @@ class Graph {
     }
 
     public String getGraphState() {
+        return getGraphState(Integer.MAX_VALUE);
+    }
+
+    /** Same as {@link #getGraphState()}, but lists at most the given number of states and of edges. */
+    public String getGraphState(int limit) {
         StringBuilder sb = new StringBuilder();
         sb.append(isValid? "valid":"invalid").append("\n");
         sb.append(this.validate()).append("\n");
 
         sb.append("States: \n");
+        int listed = 0;
         for (State node : states) {
+            if (listed++ == limit) {
+                sb.append("  ... (").append(states.size() - limit).append(" more)\n");
+                break;
+            }
             sb.append("  ").append(node.getNumber()).append(" at (").append(node.x).append(", ").append(node.y).append(")\n");
         }
 
         sb.append("\nEdges: \n");
-        for (Edge edge : edges) {
+        listed = 0;
+        for (Edge edge : edges.values()) {
+            if (listed++ == limit) {
+                sb.append("  ... (").append(edges.size() - limit).append(" more)\n");
+                break;
+            }
             sb.append("  ").append(edge.startState.getNumber()).append(" -> ").append(edge.endState.getNumber())
                     .append("\n");
         }
@@ -123,10 +294,40 @@ class Graph {
     }
 
 
+    /**
+     * Takes over the states and edges of a graph built elsewhere, e.g. on an import thread, so
+     * only references change hands here. The source is left empty.
+     */
+    public void replaceWith(Graph source) {
+        states = source.states;
+        edges = source.edges;
+        currentNodeNumber = source.currentNodeNumber;
+        source.states = new HashSet<>();
+        source.edges = new HashMap<>();
+        modificationCount++;
+        for (GraphListener listener : listeners) {
+            listener.graphReplaced(source);
+        }
+    }
+
     public void importGraph(File filePath) {
+        try {
+            readGraph(filePath, GraphImporter.PRINT_PROGRESS);
+            System.out.println("Graph erfolgreich importiert!");
+        } catch (IOException e) {
+            System.err.println("Fehler beim Importieren des Graphen: " + e.getMessage());
+        }
+    }
+
+    /** Replaces the graph with the contents of the file, in the editor's own format or one of {@link GraphImporter}'s. */
+    public void readGraph(File filePath, GraphImporter.ProgressListener progress) throws IOException {
+        GraphImporter.Format format = GraphImporter.formatOf(filePath);
+        if (format != null) {
+            GraphImporter.read(filePath, format, progress).copyInto(this);
+            return;
+        }
         try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-            states.clear();
-            edges.clear();
+            Batch batch = beginBatch().removeNodes(states);
 
             String line;
             Map<Integer, State> stateMap = new HashMap<>();
@@ -139,25 +340,19 @@ class Graph {
                     int x = Integer.parseInt(parts[2]);
                     int y = Integer.parseInt(parts[3]);
                     State state = new State(x, y, number, NODE_RADIUS);
-                    this.currentNodeNumber++;
+                    this.currentNodeNumber = Math.max(this.currentNodeNumber, number + 1);
 
-                    states.add(state);
+                    batch.addNode(state);
                     stateMap.put(number, state);
                 } else if (parts[0].equals("EDGE")) {
                     int startNumber = Integer.parseInt(parts[1]);
                     int endNumber = Integer.parseInt(parts[2]);
 
-                    Edge edge = new Edge(stateMap.get(startNumber), stateMap.get(endNumber));
-                    edges.add(edge);
-
-                    // Verknüpfungen zwischen Knoten aktualisieren
-                    stateMap.get(startNumber).outgoingEdges.add(edge);
-                    stateMap.get(endNumber).incomingEdges.add(edge);
+                    // doppelte Kanten werden beim Commit verworfen
+                    batch.addEdge(stateMap.get(startNumber), stateMap.get(endNumber));
                 }
             }
-            System.out.println("Graph erfolgreich importiert!");
-        } catch (IOException e) {
-            System.err.println("Fehler beim Importieren des Graphen: " + e.getMessage());
+            batch.commit();
         }
     }
 
@@ -0,0 +1,234 @@
+import java.util.*;
+
+/**
+ * Keeps validation, depth and simple pebble bounds of a graph up to date while it is edited.
+ * An edit can only change the results of the touched nodes and their descendants, so only
+ * that cone is recomputed, in topological order and reusing the values of its predecessors.
+ */
+class GraphAnalysis implements GraphListener {
+
+    private static class NodeResult {
+        boolean isolated;
+        boolean blocked; // on a cycle or behind one, can never be pebbled
+        int depth;
+        int treeCost; // -1 unless the ancestors form an in-tree
+        int lowerBound;
+    }
+
+    private final Graph graph;
+    private Map<State, NodeResult> results = new HashMap<>();
+    private Set<State> isolated = new HashSet<>();
+    private Set<State> blocked = new HashSet<>();
+    private TreeMap<Integer, Integer> depths = new TreeMap<>();
+    private TreeMap<Integer, Integer> lowerBounds = new TreeMap<>();
+    private int lastRecomputed = 0;
+
+    public GraphAnalysis(Graph graph) {
+        this.graph = graph;
+        graph.analysis = this;
+        graph.addGraphListener(this);
+        recompute(new HashSet<>(graph.getStates()));
+    }
+
+    @Override
+    public void graphChanged(Set<State> affected, boolean structureChanged) {
+        if (!structureChanged) {
+            return;
+        }
+        Set<State> dirty = new HashSet<>();
+        Deque<State> pending = new ArrayDeque<>();
+        for (State state : affected) {
+            if (!graph.getStates().contains(state)) {
+                forget(state);
+            } else if (dirty.add(state)) {
+                pending.push(state);
+            }
+        }
+        while (!pending.isEmpty()) {
+            for (Edge edge : pending.pop().outgoingEdges) {
+                if (dirty.add(edge.endState)) {
+                    pending.push(edge.endState);
+                }
+            }
+        }
+        recompute(dirty);
+    }
+
+    // the states came from another graph; if it was analysed already, its results are taken along
+    @Override
+    public void graphReplaced(Graph source) {
+        GraphAnalysis computed = source.analysis;
+        if (computed == null) {
+            results = new HashMap<>();
+            isolated = new HashSet<>();
+            blocked = new HashSet<>();
+            depths = new TreeMap<>();
+            lowerBounds = new TreeMap<>();
+            recompute(new HashSet<>(graph.getStates()));
+            return;
+        }
+        source.removeGraphListener(computed);
+        source.analysis = null;
+        results = computed.results;
+        isolated = computed.isolated;
+        blocked = computed.blocked;
+        depths = computed.depths;
+        lowerBounds = computed.lowerBounds;
+        lastRecomputed = computed.lastRecomputed;
+    }
+
+    private void forget(State state) {
+        isolated.remove(state);
+        blocked.remove(state);
+        NodeResult result = results.remove(state);
+        if (result != null) {
+            remove(result);
+        }
+    }
+
+    // Kahn restricted to the dirty nodes, whatever is left over sits on or behind a cycle
+    private void recompute(Set<State> dirty) {
+        lastRecomputed = dirty.size();
+        Map<State, Integer> missing = new HashMap<>();
+        Deque<State> ready = new ArrayDeque<>();
+        for (State state : dirty) {
+            int count = 0;
+            for (Edge edge : state.incomingEdges) {
+                if (dirty.contains(edge.startState)) {
+                    count++;
+                }
+            }
+            missing.put(state, count);
+            if (count == 0) {
+                ready.add(state);
+            }
+        }
+        while (!ready.isEmpty()) {
+            State state = ready.poll();
+            missing.remove(state);
+            update(state, compute(state, false));
+            for (Edge edge : state.outgoingEdges) {
+                Integer count = missing.get(edge.endState);
+                if (count != null) {
+                    missing.put(edge.endState, count - 1);
+                    if (count == 1) {
+                        ready.add(edge.endState);
+                    }
+                }
+            }
+        }
+        for (State state : missing.keySet()) {
+            update(state, compute(state, true));
+        }
+    }
+
+    private NodeResult compute(State state, boolean onCycle) {
+        NodeResult result = new NodeResult();
+        result.isolated = !state.hasPredecessor() && !state.hasSuccessor();
+        result.blocked = onCycle;
+        int depth = 0;
+        boolean isTree = true;
+        int[] childCosts = new int[state.incomingEdges.size()];
+        for (int i = 0; i < childCosts.length; i++) {
+            State predecessor = state.incomingEdges.get(i).startState;
+            NodeResult previous = results.get(predecessor);
+            if (previous == null || previous.blocked) {
+                result.blocked = true;
+                isTree = false;
+                continue;
+            }
+            depth = Math.max(depth, previous.depth + 1);
+            childCosts[i] = previous.treeCost;
+            if (previous.treeCost < 0 || predecessor.outgoingEdges.size() != 1) {
+                isTree = false;
+            }
+        }
+        result.depth = depth;
+        result.treeCost = isTree ? treeCost(childCosts) : -1;
+        result.lowerBound = Math.max(state.incomingEdges.isEmpty() ? 1 : state.incomingEdges.size() + 1, result.treeCost);
+        return result;
+    }
+
+    // same recurrence as in PebbleHeuristic: expensive subtrees first
+    private static int treeCost(int[] childCosts) {
+        if (childCosts.length == 0) {
+            return 1;
+        }
+        int[] sorted = childCosts.clone();
+        Arrays.sort(sorted);
+        int result = sorted.length + 1;
+        for (int i = 0; i < sorted.length; i++) {
+            result = Math.max(result, sorted[sorted.length - 1 - i] + i);
+        }
+        return result;
+    }
+
+    private void update(State state, NodeResult result) {
+        NodeResult previous = results.put(state, result);
+        if (previous != null) {
+            remove(previous);
+        }
+        if (result.isolated) {
+            isolated.add(state);
+        } else {
+            isolated.remove(state);
+        }
+        if (result.blocked) {
+            blocked.add(state);
+        } else {
+            blocked.remove(state);
+            depths.merge(result.depth, 1, Integer::sum);
+            lowerBounds.merge(result.lowerBound, 1, Integer::sum);
+        }
+    }
+
+    private void remove(NodeResult result) {
+        if (!result.blocked) {
+            decrement(depths, result.depth);
+            decrement(lowerBounds, result.lowerBound);
+        }
+    }
+
+    private static void decrement(TreeMap<Integer, Integer> counts, int key) {
+        counts.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+    }
+
+    /** Same result as the full check in {@link Graph#validate()}, from the maintained state. */
+    public String validate() {
+        int size = graph.getStates().size();
+        graph.isValid = false;
+        if (size == 0) {
+            graph.isValid = true;
+            return "start building or import your graph.";
+        }
+        if (size == 1) {
+            return "valid";
+        }
+        if (!isolated.isEmpty()) {
+            return "state " + isolated.iterator().next().getNumber() + " is not connected ";
+        }
+        graph.isValid = true;
+        return "flawless";
+    }
+
+    public int getDepth() {
+        return depths.isEmpty() ? 0 : depths.lastKey();
+    }
+
+    public int getLowerBound() {
+        return lowerBounds.isEmpty() ? 0 : lowerBounds.lastKey();
+    }
+
+    public boolean isAcyclic() {
+        return blocked.isEmpty();
+    }
+
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(isAcyclic() ? "acyclic" : blocked.size() + " states on or behind a cycle").append("\n");
+        sb.append("depth: ").append(getDepth()).append("\n");
+        sb.append("pebbles needed: at least ").append(getLowerBound()).append("\n");
+        sb.append("last edit recomputed ").append(lastRecomputed).append(" states\n");
+        return sb.toString();
+    }
+}
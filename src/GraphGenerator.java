@@ -0,0 +1,110 @@
+import java.util.Random;
+
+/**
+ * Builds the standard graph families from short specs such as "pyramid:6", "tree:4",
+ * "chain:10" or "random:1000:3000:42" (nodes, edges, seed).
+ */
+class GraphGenerator {
+    static final int SPACING = 80;
+
+    static boolean isSpec(String spec) {
+        String family = spec.split(":", 2)[0];
+        return spec.contains(":") && (family.equals("pyramid") || family.equals("tree")
+                || family.equals("chain") || family.equals("random"));
+    }
+
+    static Graph generate(String spec) {
+        String[] parts = spec.split(":");
+        switch (parts[0]) {
+            case "pyramid":
+                return pyramid(Integer.parseInt(parts[1]));
+            case "tree":
+                return tree(Integer.parseInt(parts[1]));
+            case "chain":
+                return chain(Integer.parseInt(parts[1]));
+            case "random":
+                return random(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), Long.parseLong(parts[3]));
+            default:
+                throw new IllegalArgumentException("unknown graph family: " + parts[0]);
+        }
+    }
+
+    /** Pyramid with the given number of nodes on the bottom level. */
+    static Graph pyramid(int base) {
+        Graph graph = new Graph();
+        Graph.Batch batch = graph.beginBatch();
+        State[] below = null;
+        for (int level = 0; level < base; level++) {
+            State[] row = new State[base - level];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = new State(SPACING * (2 * i + level + 1) / 2, SPACING * (base - level), graph.currentNodeNumber++, Graph.NODE_RADIUS);
+                batch.addNode(row[i]);
+                if (below != null) {
+                    batch.addEdge(below[i], row[i]);
+                    batch.addEdge(below[i + 1], row[i]);
+                }
+            }
+            below = row;
+        }
+        batch.commit();
+        return graph;
+    }
+
+    /** Complete binary in-tree of the given height. */
+    static Graph tree(int height) {
+        Graph graph = new Graph();
+        Graph.Batch batch = graph.beginBatch();
+        State[] below = null;
+        for (int level = 0; level <= height; level++) {
+            State[] row = new State[1 << (height - level)];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = new State(SPACING * ((2 * i + 1) << level) / 2, SPACING * (height - level + 1), graph.currentNodeNumber++, Graph.NODE_RADIUS);
+                batch.addNode(row[i]);
+                if (below != null) {
+                    batch.addEdge(below[2 * i], row[i]);
+                    batch.addEdge(below[2 * i + 1], row[i]);
+                }
+            }
+            below = row;
+        }
+        batch.commit();
+        return graph;
+    }
+
+    static Graph chain(int length) {
+        Graph graph = new Graph();
+        Graph.Batch batch = graph.beginBatch();
+        State previous = null;
+        for (int i = 0; i < length; i++) {
+            State state = new State(SPACING * (i + 1), SPACING, graph.currentNodeNumber++, Graph.NODE_RADIUS);
+            batch.addNode(state);
+            if (previous != null) {
+                batch.addEdge(previous, state);
+            }
+            previous = state;
+        }
+        batch.commit();
+        return graph;
+    }
+
+    /** Random DAG: every edge points from a lower to a higher node number, parallel edges are dropped. */
+    static Graph random(int nodes, int edges, long seed) {
+        Graph graph = new Graph();
+        Graph.Batch batch = graph.beginBatch();
+        Random random = new Random(seed);
+        int columns = (int) Math.ceil(Math.sqrt(nodes));
+        State[] states = new State[nodes];
+        for (int i = 0; i < nodes; i++) {
+            states[i] = new State(SPACING * (i % columns + 1), SPACING * (i / columns + 1), graph.currentNodeNumber++, Graph.NODE_RADIUS);
+            batch.addNode(states[i]);
+        }
+        for (int i = 0; i < edges && nodes > 1; i++) {
+            int a = random.nextInt(nodes), b = random.nextInt(nodes);
+            if (a != b) {
+                batch.addEdge(states[Math.min(a, b)], states[Math.max(a, b)]);
+            }
+        }
+        batch.commit();
+        return graph;
+    }
+}
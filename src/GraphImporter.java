@@ -0,0 +1,601 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Streaming importer for graphs written by other tools: DOT, GraphML and plain edge lists.
+ * The file is memory-mapped in chunks that end at line breaks, the chunks are parsed in parallel
+ * by hand-written scanners, and their node names are merged in file order into dense indices.
+ * All formats are read line by line: a DOT statement or a GraphML tag must not span lines,
+ * those that do are skipped and their number is reported on stderr. Node groups in DOT edges
+ * ("a -> {b c}") are expanded into one edge per pair.
+ * Edges of undirected DOT graphs ("a -- b") are read as one edge from left to right.
+ */
+class GraphImporter {
+    static final int CHUNK_SIZE = 16 * 1024 * 1024;
+
+    enum Format { EDGE_LIST, DOT, GRAPHML }
+
+    interface ProgressListener {
+        void progress(long lines, long bytes, long totalBytes, double linesPerSecond);
+    }
+
+    static final ProgressListener PRINT_PROGRESS = (lines, bytes, totalBytes, linesPerSecond) ->
+            System.out.printf("%d lines (%d%%), %.0f lines/s%n", lines, totalBytes == 0 ? 100 : 100 * bytes / totalBytes, linesPerSecond);
+
+    private static class IntList {
+        int[] values = new int[1024];
+        int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    // parse result of one chunk, names are numbered locally in order of appearance
+    private static class Chunk {
+        final List<String> names = new ArrayList<>();
+        final Map<String, Integer> ids = new HashMap<>();
+        final IntList sources = new IntList();
+        final IntList targets = new IntList();
+        long lines = 0;
+        long bytes = 0;
+        long skipped = 0;
+
+        int id(String name) {
+            Integer id = ids.get(name);
+            if (id == null) {
+                id = names.size();
+                ids.put(name, id);
+                names.add(name);
+            }
+            return id;
+        }
+
+        void node(String name) {
+            id(name);
+        }
+
+        void edge(String source, String target) {
+            sources.add(id(source));
+            targets.add(id(target));
+        }
+    }
+
+    /**
+     * Guesses the format from the extension or the first line; null means the editor's own
+     * NODE/EDGE format.
+     */
+    static Format formatOf(File file) throws IOException {
+        String name = file.getName().toLowerCase();
+        if (name.endsWith(".dot") || name.endsWith(".gv")) {
+            return Format.DOT;
+        }
+        if (name.endsWith(".graphml")) {
+            return Format.GRAPHML;
+        }
+        String line;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            do {
+                line = reader.readLine();
+            } while (line != null && line.trim().isEmpty());
+        }
+        if (line == null || line.startsWith("NODE,") || line.startsWith("EDGE,")) {
+            return null;
+        }
+        line = line.trim();
+        if (line.startsWith("<")) {
+            return Format.GRAPHML;
+        }
+        if (line.startsWith("digraph") || line.startsWith("graph") || line.startsWith("strict")) {
+            return Format.DOT;
+        }
+        return Format.EDGE_LIST;
+    }
+
+    public static CsrGraph read(File file, Format format, ProgressListener listener) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<long[]> ranges = chunkRanges(channel, size);
+            int threads = Math.max(1, Math.min(ranges.size(), Runtime.getRuntime().availableProcessors()));
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<Chunk>> futures = new ArrayList<>();
+                for (long[] range : ranges) {
+                    futures.add(executor.submit(() -> parse(channel.map(FileChannel.MapMode.READ_ONLY,
+                            range[0], range[1] - range[0]), format)));
+                }
+
+                // merged in file order, so indices do not depend on which thread finished first
+                Map<String, Integer> ids = new HashMap<>();
+                List<String> names = new ArrayList<>();
+                IntList sources = new IntList();
+                IntList targets = new IntList();
+                long lines = 0;
+                long bytes = 0;
+                long skipped = 0;
+                for (Future<Chunk> future : futures) {
+                    Chunk chunk = future.get();
+                    int[] remap = new int[chunk.names.size()];
+                    for (int i = 0; i < remap.length; i++) {
+                        remap[i] = ids.computeIfAbsent(chunk.names.get(i), name -> {
+                            names.add(name);
+                            return names.size() - 1;
+                        });
+                    }
+                    for (int i = 0; i < chunk.sources.size; i++) {
+                        sources.add(remap[chunk.sources.values[i]]);
+                        targets.add(remap[chunk.targets.values[i]]);
+                    }
+                    lines += chunk.lines;
+                    bytes += chunk.bytes;
+                    skipped += chunk.skipped;
+                    if (listener != null) {
+                        double seconds = (System.nanoTime() - start) / 1e9;
+                        listener.progress(lines, bytes, size, lines / Math.max(seconds, 1e-9));
+                    }
+                }
+                if (skipped > 0) {
+                    System.err.println(skipped + " Anweisungen in " + file.getName() + " übersprungen, sie gehen über mehrere Zeilen");
+                }
+                return new CsrGraph(names.toArray(new String[0]), sources.values, targets.values, sources.size);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("import interrupted");
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    // ranges of about CHUNK_SIZE bytes, each extended to the end of its last line
+    private static List<long[]> chunkRanges(FileChannel channel, long size) throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + CHUNK_SIZE);
+            boolean found = end == size;
+            while (!found) {
+                probe.clear();
+                int read = channel.read(probe, end);
+                if (read <= 0) {
+                    end = size;
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        end += i + 1;
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    end += read;
+                }
+            }
+            ranges.add(new long[]{start, end});
+            start = end;
+        }
+        return ranges;
+    }
+
+    private static Chunk parse(MappedByteBuffer buffer, Format format) {
+        Chunk chunk = new Chunk();
+        int limit = buffer.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int end = lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            switch (format) {
+                case EDGE_LIST:
+                    parseEdgeListLine(buffer, lineStart, end, chunk);
+                    break;
+                case DOT:
+                    parseDotLine(buffer, lineStart, end, chunk);
+                    break;
+                case GRAPHML:
+                    parseGraphmlLine(buffer, lineStart, end, chunk);
+                    break;
+            }
+            chunk.lines++;
+            lineStart = lineEnd + 1;
+        }
+        chunk.bytes = limit;
+        return chunk;
+    }
+
+    private static String text(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        buffer.get(from, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // ---------- edge lists: "source target [weight ...]", separated by blanks, tabs, commas or semicolons ----------
+
+    private static boolean isSeparator(byte c) {
+        return c == ' ' || c == '\t' || c == ',' || c == ';';
+    }
+
+    private static void parseEdgeListLine(ByteBuffer buffer, int from, int to, Chunk chunk) {
+        int i = from;
+        while (i < to && isSeparator(buffer.get(i))) {
+            i++;
+        }
+        if (i >= to || buffer.get(i) == '#' || buffer.get(i) == '%' || (buffer.get(i) == '/' && i + 1 < to && buffer.get(i + 1) == '/')) {
+            return;
+        }
+        int end = i;
+        while (end < to && !isSeparator(buffer.get(end))) {
+            end++;
+        }
+        String source = text(buffer, i, end);
+        i = end;
+        while (i < to && isSeparator(buffer.get(i))) {
+            i++;
+        }
+        if (i >= to) {
+            chunk.node(source);
+            return;
+        }
+        end = i;
+        while (end < to && !isSeparator(buffer.get(end))) {
+            end++;
+        }
+        chunk.edge(source, text(buffer, i, end));
+    }
+
+    // ---------- DOT: node and edge statements, attribute lists are skipped ----------
+
+    private static boolean isDotIdChar(byte c) {
+        return c < 0 || c == '_' || c == '.' || c == '-' || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isEdgeOperator(ByteBuffer buffer, int i, int to) {
+        return i + 1 < to && buffer.get(i) == '-' && (buffer.get(i + 1) == '>' || buffer.get(i + 1) == '-');
+    }
+
+    private static int skipBlanks(ByteBuffer buffer, int i, int to) {
+        while (i < to && (buffer.get(i) == ' ' || buffer.get(i) == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int dotIdEnd(ByteBuffer buffer, int i, int to) {
+        if (i < to && buffer.get(i) == '"') {
+            for (i++; i < to && buffer.get(i) != '"'; i++) {
+                if (buffer.get(i) == '\\') {
+                    i++;
+                }
+            }
+            return Math.min(i + 1, to);
+        }
+        if (i < to && buffer.get(i) == '<') {
+            int depth = 0;
+            for (; i < to; i++) {
+                if (buffer.get(i) == '<') {
+                    depth++;
+                } else if (buffer.get(i) == '>' && --depth == 0) {
+                    return i + 1;
+                }
+            }
+            return to;
+        }
+        while (i < to && isDotIdChar(buffer.get(i)) && !isEdgeOperator(buffer, i, to)) {
+            i++;
+        }
+        return i;
+    }
+
+    // "node:port" and "node:port:compass" both refer to the node
+    private static int skipPort(ByteBuffer buffer, int i, int to) {
+        i = skipBlanks(buffer, i, to);
+        while (i < to && buffer.get(i) == ':') {
+            i = skipBlanks(buffer, dotIdEnd(buffer, skipBlanks(buffer, i + 1, to), to), to);
+        }
+        return i;
+    }
+
+    private static String dotId(ByteBuffer buffer, int from, int to) {
+        if (to - from >= 2 && buffer.get(from) == '"') {
+            return text(buffer, from + 1, to - 1).replace("\\\"", "\"");
+        }
+        return text(buffer, from, to);
+    }
+
+    private static int skipAttributes(ByteBuffer buffer, int i, int to) {
+        boolean quoted = false;
+        for (i++; i < to; i++) {
+            byte c = buffer.get(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == '\\' && quoted) {
+                i++;
+            } else if (c == ']' && !quoted) {
+                return i + 1;
+            }
+        }
+        return to;
+    }
+
+    private static void parseDotLine(ByteBuffer buffer, int from, int to, Chunk chunk) {
+        int i = from;
+        while (i < to) {
+            byte c = buffer.get(i);
+            if (c == '{') {
+                int end = dotGroupEnd(buffer, i, to);
+                int after = end < 0 ? to : skipBlanks(buffer, end, to);
+                if (isEdgeOperator(buffer, after, to)) {
+                    i = parseDotEdges(buffer, after, to, dotGroup(buffer, i, end), chunk);
+                } else {
+                    i++; // body of a graph or subgraph
+                }
+                continue;
+            }
+            if (c == ' ' || c == '\t' || c == ';' || c == ',' || c == '}') {
+                i++;
+                continue;
+            }
+            if (c == '#' || (c == '/' && i + 1 < to && buffer.get(i + 1) == '/')) {
+                return;
+            }
+            if (c == '[') {
+                i = skipAttributes(buffer, i, to);
+                continue;
+            }
+            int end = dotIdEnd(buffer, i, to);
+            if (end == i) {
+                i++; // ports, stray operators and the like
+                continue;
+            }
+            String name = dotId(buffer, i, end);
+            boolean quoted = c == '"';
+            i = skipPort(buffer, end, to);
+            if (!quoted && isKeyword(name)) {
+                if (!name.equalsIgnoreCase("node") && !name.equalsIgnoreCase("edge") && i < to
+                        && buffer.get(i) != '{' && buffer.get(i) != '[') {
+                    i = skipBlanks(buffer, dotIdEnd(buffer, i, to), to); // name of the graph
+                }
+                continue;
+            }
+            if (i < to && buffer.get(i) == '=') {
+                i = dotIdEnd(buffer, skipBlanks(buffer, i + 1, to), to); // graph attribute
+                continue;
+            }
+            i = parseDotEdges(buffer, i, to, Collections.singletonList(name), chunk);
+        }
+    }
+
+    // "-> b -> {c d}": every node of an operand gets an edge to every node of the next one
+    private static int parseDotEdges(ByteBuffer buffer, int i, int to, List<String> sources, Chunk chunk) {
+        boolean edge = false;
+        while (isEdgeOperator(buffer, i, to)) {
+            int next = skipBlanks(buffer, i + 2, to);
+            List<String> targets;
+            int end;
+            if (next < to && buffer.get(next) == '{') {
+                end = dotGroupEnd(buffer, next, to);
+                if (end < 0) {
+                    chunk.skipped++; // the group goes on in the next line
+                    i = to;
+                    break;
+                }
+                targets = dotGroup(buffer, next, end);
+                end = skipBlanks(buffer, end, to);
+            } else {
+                end = dotIdEnd(buffer, next, to);
+                if (end == next) {
+                    chunk.skipped++; // the target is in the next line
+                    break;
+                }
+                targets = Collections.singletonList(dotId(buffer, next, end));
+                end = skipPort(buffer, end, to);
+            }
+            for (String source : sources) {
+                for (String target : targets) {
+                    chunk.edge(source, target);
+                }
+            }
+            sources = targets;
+            edge = true;
+            i = end;
+        }
+        if (!edge) {
+            for (String source : sources) {
+                chunk.node(source);
+            }
+        }
+        return i;
+    }
+
+    // index after the '}' closing the group at i, -1 if it is not closed in this line or contains another group
+    private static int dotGroupEnd(ByteBuffer buffer, int i, int to) {
+        boolean quoted = false;
+        for (i++; i < to; i++) {
+            byte c = buffer.get(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == '\\' && quoted) {
+                i++;
+            } else if (c == '{' && !quoted) {
+                return -1;
+            } else if (c == '}' && !quoted) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    // the node names listed in "{a b; c}", attributes and ports are skipped
+    private static List<String> dotGroup(ByteBuffer buffer, int from, int end) {
+        List<String> names = new ArrayList<>();
+        int to = end - 1;
+        int i = from + 1;
+        while (i < to) {
+            byte c = buffer.get(i);
+            if (c == '[') {
+                i = skipAttributes(buffer, i, to);
+                continue;
+            }
+            int idEnd = dotIdEnd(buffer, i, to);
+            if (idEnd == i) {
+                i++;
+                continue;
+            }
+            String name = dotId(buffer, i, idEnd);
+            boolean quoted = c == '"';
+            i = skipPort(buffer, idEnd, to);
+            if (i < to && buffer.get(i) == '=') {
+                i = dotIdEnd(buffer, skipBlanks(buffer, i + 1, to), to);
+            } else if (quoted || !isKeyword(name)) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    private static boolean isKeyword(String name) {
+        switch (name.toLowerCase()) {
+            case "strict":
+            case "graph":
+            case "digraph":
+            case "subgraph":
+            case "node":
+            case "edge":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // ---------- GraphML: <node id="..."> and <edge source="..." target="..."> ----------
+
+    private static void parseGraphmlLine(ByteBuffer buffer, int from, int to, Chunk chunk) {
+        for (int i = from; i < to; i++) {
+            if (buffer.get(i) != '<') {
+                continue;
+            }
+            int tagEnd = i + 1;
+            while (tagEnd < to && buffer.get(tagEnd) != '>') {
+                tagEnd++;
+            }
+            if (isTag(buffer, i + 1, to, "node")) {
+                String id = attribute(buffer, i + 5, tagEnd, "id");
+                if (id != null) {
+                    chunk.node(id);
+                } else {
+                    chunk.skipped++;
+                }
+            } else if (isTag(buffer, i + 1, to, "edge")) {
+                String source = attribute(buffer, i + 5, tagEnd, "source");
+                String target = attribute(buffer, i + 5, tagEnd, "target");
+                if (source != null && target != null) {
+                    chunk.edge(source, target);
+                } else {
+                    chunk.skipped++;
+                }
+            }
+            i = tagEnd;
+        }
+    }
+
+    private static boolean isTag(ByteBuffer buffer, int i, int to, String name) {
+        if (i + name.length() >= to) {
+            return false;
+        }
+        for (int k = 0; k < name.length(); k++) {
+            if (buffer.get(i + k) != name.charAt(k)) {
+                return false;
+            }
+        }
+        byte after = buffer.get(i + name.length());
+        return after == ' ' || after == '\t' || after == '/' || after == '>';
+    }
+
+    private static String attribute(ByteBuffer buffer, int from, int to, String name) {
+        for (int i = from; i + name.length() + 2 < to; i++) {
+            byte before = buffer.get(i - 1);
+            if (before != ' ' && before != '\t') {
+                continue;
+            }
+            boolean matches = true;
+            for (int k = 0; k < name.length() && matches; k++) {
+                matches = buffer.get(i + k) == name.charAt(k);
+            }
+            int j = i + name.length();
+            if (!matches || buffer.get(j) != '=') {
+                continue;
+            }
+            byte quote = buffer.get(j + 1);
+            if (quote != '"' && quote != '\'') {
+                continue;
+            }
+            int end = j + 2;
+            while (end < to && buffer.get(end) != quote) {
+                end++;
+            }
+            return unescapeXml(text(buffer, j + 2, end));
+        }
+        return null;
+    }
+
+    // "n&amp;2" is the node n&2; unknown entities are kept as they are
+    private static String unescapeXml(String value) {
+        if (value.indexOf('&') < 0) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            int semicolon = c == '&' ? value.indexOf(';', i) : -1;
+            String replacement = semicolon < 0 ? null : entity(value.substring(i + 1, semicolon));
+            if (replacement == null) {
+                sb.append(c);
+            } else {
+                sb.append(replacement);
+                i = semicolon;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String entity(String name) {
+        switch (name) {
+            case "amp":
+                return "&";
+            case "lt":
+                return "<";
+            case "gt":
+                return ">";
+            case "quot":
+                return "\"";
+            case "apos":
+                return "'";
+        }
+        if (name.length() < 2 || name.charAt(0) != '#') {
+            return null;
+        }
+        try {
+            boolean hex = name.charAt(1) == 'x' || name.charAt(1) == 'X';
+            int codePoint = hex ? Integer.parseInt(name.substring(2), 16) : Integer.parseInt(name.substring(1));
+            return new String(Character.toChars(codePoint));
+        } catch (IllegalArgumentException e) {
+            return null; // also thrown for invalid code points
+        }
+    }
+}
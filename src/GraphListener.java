@@ -0,0 +1,18 @@
+import java.util.Collections;
+import java.util.Set;
+
+interface GraphListener {
+    /**
+     * Called once per committed change. The affected states include removed ones;
+     * structureChanged is false if nodes were only moved.
+     */
+    void graphChanged(Set<State> affected, boolean structureChanged);
+
+    /**
+     * Called after {@link Graph#replaceWith(Graph)} took over all states and edges of source.
+     * No single state is singled out as affected then.
+     */
+    default void graphReplaced(Graph source) {
+        graphChanged(Collections.emptySet(), true);
+    }
+}
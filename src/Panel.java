@@ -1,12 +1,33 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
 import java.awt.geom.QuadCurve2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
 
 class Panel extends JPanel{
     static final int NODE_RADIUS = 30;
+    // on-screen node radius below which labels and arrowheads are dropped
+    static final double DETAIL_RADIUS = 8;
+    // on-screen node radius below which nodes become pixels and edges a density map
+    static final double OVERVIEW_RADIUS = 2;
+    // edges are stroked one by one, with more of them in view the density map is used at any zoom level
+    static final int MAX_DRAWN_EDGES = 10000;
+    // the text pane gets slow with long texts, large graphs are only listed in part
+    static final int MAX_LISTED = 200;
+    static final double MIN_SCALE = 0.0001, MAX_SCALE = 10;
     protected Graph graph;
     protected JTextPane  graphStateTextArea;
     protected JScrollPane scrollPane;  // To make the text area scrollable
+    protected AffineTransform viewport = new AffineTransform();
+    private DensityMap densityMap = new DensityMap(this);
+    private Point panStart;
     public Panel(Graph graph) {
 
         setLayout(new BorderLayout());
@@ -16,31 +37,151 @@ class Panel extends JPanel{
         graphStateTextArea.setEditable(false);
         graphStateTextArea.setFont(new Font("Arial", Font.PLAIN, 20));
 
-        graphStateTextArea.setText(graph.getGraphState());  // Initialize with current state
+        graphStateTextArea.setText(graph.getGraphState(MAX_LISTED));  // Initialize with current state
         scrollPane = new JScrollPane(graphStateTextArea);
         add(scrollPane, BorderLayout.EAST);  // Add to the right side of the panel
+
+        // mouse wheel = zoom around the cursor, middle mouse drag = pan
+        MouseAdapter viewportControl = new MouseAdapter() {
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                zoom(Math.pow(1.1, -e.getPreciseWheelRotation()), e.getX(), e.getY());
+            }
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (SwingUtilities.isMiddleMouseButton(e)) {
+                    panStart = e.getPoint();
+                }
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (panStart != null) {
+                    viewport.preConcatenate(AffineTransform.getTranslateInstance(e.getX() - panStart.x, e.getY() - panStart.y));
+                    panStart = e.getPoint();
+                    repaint();
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                if (SwingUtilities.isMiddleMouseButton(e)) {
+                    panStart = null;
+                }
+            }
+        };
+        addMouseWheelListener(viewportControl);
+        addMouseListener(viewportControl);
+        addMouseMotionListener(viewportControl);
+    }
+
+    protected void zoom(double factor, int screenX, int screenY) {
+        double scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, viewport.getScaleX() * factor));
+        factor = scale / viewport.getScaleX();
+        AffineTransform zoom = AffineTransform.getTranslateInstance(screenX, screenY);
+        zoom.scale(factor, factor);
+        zoom.translate(-screenX, -screenY);
+        viewport.preConcatenate(zoom);
+        repaint();
+    }
+
+    /** Shows the whole graph in the drawing area, but never enlarges it beyond 1:1. */
+    protected void zoomToFit() {
+        if (graph.getStates().isEmpty()) {
+            viewport.setToIdentity();
+            repaint();
+            return;
+        }
+        Rectangle bounds = null;
+        for (State state : graph.getStates()) {
+            Rectangle node = new Rectangle(state.x - state.radius, state.y - state.radius, 2 * state.radius, 2 * state.radius);
+            bounds = bounds == null ? node : bounds.union(node);
+        }
+        int width = Math.max(1, getWidth() - scrollPane.getWidth());
+        int height = Math.max(1, getHeight());
+        double scale = Math.max(MIN_SCALE, Math.min(1, Math.min(width / (double) bounds.width, height / (double) bounds.height)));
+        viewport.setToScale(scale, scale);
+        viewport.translate(-bounds.x, -bounds.y);
+        repaint();
+    }
+
+    /** Converts a mouse position into graph coordinates. */
+    protected Point toGraph(MouseEvent e) {
+        try {
+            Point2D point = viewport.inverseTransform(e.getPoint(), null);
+            return new Point((int) Math.round(point.getX()), (int) Math.round(point.getY()));
+        } catch (NoninvertibleTransformException ex) {
+            return e.getPoint();
+        }
     }
 
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        g.setColor(Color.BLACK);
+        double radius = NODE_RADIUS * viewport.getScaleX();
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.transform(viewport);
+        Rectangle2D visible = g2.getClipBounds();
+        if (visible == null) {
+            visible = new Rectangle2D.Double(-Double.MAX_VALUE / 2, -Double.MAX_VALUE / 2, Double.MAX_VALUE, Double.MAX_VALUE);
+        }
+        List<Edge> visibleEdges = radius < OVERVIEW_RADIUS ? null : visibleEdges(visible);
+        if (visibleEdges == null) {
+            densityMap.draw((Graphics2D) g, graph, viewport, getWidth(), getHeight());
+        } else {
+            paintGraph(g2, visible, visibleEdges, radius >= DETAIL_RADIUS);
+        }
+        g2.dispose();
+        Graphics2D overlay = (Graphics2D) g.create();
+        overlay.transform(viewport);
+        paintOverlay(overlay);
+        overlay.dispose();
+    }
+
+    // null if more than MAX_DRAWN_EDGES are visible
+    private List<Edge> visibleEdges(Rectangle2D visible) {
+        List<Edge> result = new ArrayList<>();
         for (Edge edge : graph.getEdges()) {
+            if (visible.intersectsLine(edge.startState.x, edge.startState.y, edge.endState.x, edge.endState.y)) {
+                if (result.size() == MAX_DRAWN_EDGES) {
+                    return null;
+                }
+                result.add(edge);
+            }
+        }
+        return result;
+    }
+
+    // only what intersects the visible part of the graph is drawn
+    private void paintGraph(Graphics2D g, Rectangle2D visible, List<Edge> visibleEdges, boolean detailed) {
+        g.setColor(Color.BLACK);
+        for (Edge edge : visibleEdges) {
             int startX = edge.startState.x;
             int startY = edge.startState.y;
             int endX = edge.endState.x;
             int endY = edge.endState.y;
-            drawArrowLine(g,startX, startY, endX, endY);
-            drawArrowHead(g,startX, startY, endX, endY);
-            g.setColor(Color.BLACK);
+            if (detailed) {
+                drawArrowLine(g,startX, startY, endX, endY);
+                drawArrowHead(g,startX, startY, endX, endY);
+                g.setColor(Color.BLACK);
+            } else {
+                g.drawLine(startX, startY, endX, endY);
+            }
         }
         for (State state : graph.getStates()) {
-            state.draw(g);
+            if (visible.intersects(state.x - state.radius, state.y - state.radius, 2 * state.radius, 2 * state.radius)) {
+                state.draw(g, detailed);
+            }
         }
     }
 
+    /** Hook for subclasses to draw on top of the graph, in graph coordinates. */
+    protected void paintOverlay(Graphics2D g) {
+    }
+
     protected void updateGraphState() {
-        graphStateTextArea.setText(graph.getGraphState());
+        graphStateTextArea.setText(graph.getGraphState(MAX_LISTED));
     }
 
 
@@ -1,21 +1,35 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.io.File;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 class PanelGraph extends Panel implements MouseListener, MouseMotionListener {
     private State draggedNode;
     private State edgeStartNode = null;
     private int tempX, tempY;
+    private int dragX, dragY;
+    private Point selectionStart, selectionEnd;
+    private Set<State> selection = new HashSet<>();
+    private GraphAnalysis analysis;
+    private int shownModification = -1;
 
     JButton exportButton = new JButton("Export Graph");
     JButton importButton = new JButton("Import Graph");
     JButton startPebbleGameButton = new JButton("Start Pebble Game");
+    JProgressBar importProgress = new JProgressBar(0, 100);
     public PanelGraph(Graph graph) {
         super(graph);
+        analysis = new GraphAnalysis(graph);
         JPanel topButtonPanel = new JPanel();
         JPanel bottomPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
         exportButton.setFont(new Font("Arial", Font.BOLD, 20)); // Größere Schrift
@@ -24,14 +38,35 @@ class PanelGraph extends Panel implements MouseListener, MouseMotionListener {
         importButton.setPreferredSize(new Dimension(200, 50)); // Größerer Button
         startPebbleGameButton.setFont(new Font("Arial", Font.BOLD, 20)); // Größere Schrift
         startPebbleGameButton.setPreferredSize(new Dimension(200, 50)); // Größerer Button
+        importProgress.setFont(new Font("Arial", Font.PLAIN, 16));
+        importProgress.setPreferredSize(new Dimension(400, 50));
+        importProgress.setStringPainted(true);
+        importProgress.setVisible(false);
         topButtonPanel.add(exportButton);
         topButtonPanel.add(importButton);
+        topButtonPanel.add(importProgress);
         this.add(topButtonPanel, BorderLayout.NORTH);
         bottomPanel.add(startPebbleGameButton);
         this.add(bottomPanel, BorderLayout.SOUTH);
 
         addMouseListener(this);
         addMouseMotionListener(this);
+        setFocusable(true);
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_DELETE || e.getKeyCode() == KeyEvent.VK_BACK_SPACE) {
+                    deleteSelection();
+                }
+            }
+        });
+        // moving nodes only needs a repaint, the text follows when the drag ends
+        graph.addGraphListener((affected, structureChanged) -> {
+            repaint();
+            if (structureChanged) {
+                updateGraphState();
+            }
+        });
         exportButton.addActionListener(e -> exportGraph());
         importButton.addActionListener(e -> importGraph());
 
@@ -47,40 +82,69 @@ class PanelGraph extends Panel implements MouseListener, MouseMotionListener {
     }
 
     @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
+    protected void paintOverlay(Graphics2D g) {
         if (edgeStartNode != null) {
             g.setColor(Color.GRAY);
             g.drawLine(edgeStartNode.x, edgeStartNode.y, tempX, tempY);
         }
+        g.setColor(Color.ORANGE);
+        for (State node : selection) {
+            g.drawOval(node.x - node.radius - 3, node.y - node.radius - 3, node.radius * 2 + 6, node.radius * 2 + 6);
+        }
+        if (selectionStart != null && selectionEnd != null) {
+            Rectangle rectangle = selectionRectangle();
+            g.drawRect(rectangle.x, rectangle.y, rectangle.width, rectangle.height);
+        }
+    }
+
+    // the text only changes with the graph, mouse moves do not rebuild it
+    @Override
+    protected void updateGraphState() {
+        if (shownModification == graph.modificationCount) {
+            return;
+        }
+        shownModification = graph.modificationCount;
+        graphStateTextArea.setText(analysis.describe() + graph.getGraphState(MAX_LISTED));
+    }
+
+    private Rectangle selectionRectangle() {
+        Rectangle rectangle = new Rectangle(selectionStart);
+        rectangle.add(selectionEnd);
+        return rectangle;
+    }
+
+    private void deleteSelection() {
+        graph.beginBatch().removeNodes(selection).commit();
+        selection.clear();
+        repaint();
     }
 
     @Override
     public void mouseClicked(MouseEvent e) {
+        Point p = toGraph(e);
         if (SwingUtilities.isLeftMouseButton(e)) {
     //left mouse clicked = new node
-            graph.getStates().add(new State(e.getX(), e.getY(), graph.currentNodeNumber++, 30));
+            graph.addNode(new State(p.x, p.y, graph.currentNodeNumber++, 30));
+            selection.clear();
             repaint();
         } else if (SwingUtilities.isRightMouseButton(e)) {
     //right mouse clicked = edit node
             boolean nodeClicked = false;
             for (State node : graph.getStates()) {
-                if (node.contains(e.getX(), e.getY())) {
+                if (node.contains(p.x, p.y)) {
                     nodeClicked = true;
-                    for (Edge edge: new ArrayList<>(node.incomingEdges)) {
-                        graph.removeEdge(edge);
-                    }
-                    for (Edge edge: new ArrayList<>(node.outgoingEdges)) {
-                        graph.removeEdge(edge);
+                    if (selection.contains(node)) {
+                        deleteSelection();
+                    } else {
+                        graph.removeNode(node);
                     }
-                    graph.removeNode(node);
                     repaint();
                     break;
                 }
             }
             if (!nodeClicked) {
                 for (Edge edge : graph.getEdges()) {
-                    if (isClickOnEdge(e.getX(), e.getY(), edge)) {
+                    if (isClickOnEdge(p.x, p.y, edge)) {
                         graph.removeEdge(edge);
                         repaint();
                         break;
@@ -95,51 +159,73 @@ class PanelGraph extends Panel implements MouseListener, MouseMotionListener {
 
     @Override
     public void mousePressed(MouseEvent e) {
+        if (SwingUtilities.isMiddleMouseButton(e)) {
+            return; // panning, see Panel
+        }
+        Point p = toGraph(e);
     //mouse right pressed on node = start edge
         if (SwingUtilities.isRightMouseButton(e)) {
             for (State node : graph.getStates()) {
-                if (node.contains(e.getX(), e.getY())) {
+                if (node.contains(p.x, p.y)) {
                     edgeStartNode = node;
-                    tempX = e.getX();
-                    tempY = e.getY();
+                    tempX = p.x;
+                    tempY = p.y;
                     break;
                 }
             }
         } else {
-    //mouse left pressed on node = move node
+    //mouse left pressed on node = move node (or the whole selection), elsewhere = start selecting
+            requestFocusInWindow();
             for (State node : graph.getStates()) {
-                if (node.contains(e.getX(), e.getY())) {
+                if (node.contains(p.x, p.y)) {
                     draggedNode = node;
+                    dragX = p.x;
+                    dragY = p.y;
+                    if (!selection.contains(node)) {
+                        selection.clear();
+                    }
                     break;
                 }
             }
+            if (draggedNode == null) {
+                selectionStart = p;
+            }
         }
     }
 
     @Override
     public void mouseDragged(MouseEvent e) {
+        if (SwingUtilities.isMiddleMouseButton(e)) {
+            return; // panning, see Panel
+        }
+        Point p = toGraph(e);
     //mouse drag = dynamic draw edge
         if (draggedNode != null) {
-            draggedNode.x = e.getX();
-            draggedNode.y = e.getY();
+            Set<State> moved = selection.contains(draggedNode) ? selection : Collections.singleton(draggedNode);
+            graph.beginBatch().moveNodes(moved, p.x - dragX, p.y - dragY).commit();
+            dragX = p.x;
+            dragY = p.y;
+        } else if (selectionStart != null) {
+            selectionEnd = p;
             repaint();
         } else if (edgeStartNode != null) {
-            tempX = e.getX();
-            tempY = e.getY();
+            tempX = p.x;
+            tempY = p.y;
             repaint();
         }
     }
 
     @Override
     public void mouseReleased(MouseEvent e) {
+        if (SwingUtilities.isMiddleMouseButton(e)) {
+            return; // panning, see Panel
+        }
+        Point p = toGraph(e);
     //mouse release while drawing edge + end on node = finalize edge
         if (SwingUtilities.isRightMouseButton(e)) {
             if (edgeStartNode != null) {
                 for (State node : graph.getStates()) {
-                    if (node.contains(e.getX(), e.getY()) && node != edgeStartNode) {
-                        if (edgeStartNode.connected(node) != null) {
-                            graph.removeEdge(edgeStartNode.connected(node));
-                        }
+                    if (node.contains(p.x, p.y) && node != edgeStartNode) {
                         Edge edge = new Edge(edgeStartNode, node);
                         graph.addEdge(edge);
                         if (node.connected(edgeStartNode) != null) {
@@ -153,6 +239,18 @@ class PanelGraph extends Panel implements MouseListener, MouseMotionListener {
             }
         } else {
             draggedNode = null;
+            if (selectionStart != null && selectionEnd != null) {
+                Rectangle rectangle = selectionRectangle();
+                selection.clear();
+                for (State node : graph.getStates()) {
+                    if (rectangle.contains(node.x, node.y)) {
+                        selection.add(node);
+                    }
+                }
+                repaint();
+            }
+            selectionStart = null;
+            selectionEnd = null;
         }
         updateGraphState();
     }
@@ -174,7 +272,7 @@ class PanelGraph extends Panel implements MouseListener, MouseMotionListener {
         int x2 = edge.endState.x;
         int y2 = edge.endState.y;
 
-        return isPointNearLine(px, py, x1, y1, x2, y2, 5);
+        return isPointNearLine(px, py, x1, y1, x2, y2, 5 / viewport.getScaleX());
     }
 
     private boolean isPointNearLine(int px, int py, int x1, int y1, int x2, int y2, double tolerance) {
@@ -201,10 +299,67 @@ class PanelGraph extends Panel implements MouseListener, MouseMotionListener {
 
         if (userSelection == JFileChooser.APPROVE_OPTION) {
             File fileToImport = fileChooser.getSelectedFile();
-            graph.importGraph(fileToImport);
-            repaint();
-            updateGraphState();
+            GraphImporter.Format format;
+            try {
+                format = GraphImporter.formatOf(fileToImport);
+            } catch (IOException e) {
+                System.err.println("Fehler beim Importieren des Graphen: " + e.getMessage());
+                return;
+            }
+            if (format == null) {
+                graph.importGraph(fileToImport);
+                zoomToFit();
+                updateGraphState();
+            } else {
+                importInBackground(fileToImport, format);
+            }
         }
     }
 
+    // large files are parsed off the EDT, only the finished graph is copied in here
+    private void importInBackground(File file, GraphImporter.Format format) {
+        importButton.setEnabled(false);
+        importProgress.setValue(0);
+        importProgress.setString("reading " + file.getName());
+        importProgress.setVisible(true);
+        // nodes, edges and analysis are built on the worker thread, the EDT only swaps them in
+        new SwingWorker<Graph, String>() {
+            @Override
+            protected Graph doInBackground() throws IOException {
+                CsrGraph csr = GraphImporter.read(file, format, (lines, bytes, totalBytes, linesPerSecond) -> {
+                    setProgress(totalBytes == 0 ? 100 : (int) (100 * bytes / totalBytes));
+                    publish(String.format("%,d lines, %,.0f lines/s", lines, linesPerSecond));
+                });
+                publish(String.format("building %,d nodes and %,d edges", csr.nodeCount, csr.edgeCount()));
+                Graph imported = new Graph();
+                csr.copyInto(imported);
+                new GraphAnalysis(imported);
+                return imported;
+            }
+
+            @Override
+            protected void process(List<String> messages) {
+                importProgress.setValue(getProgress());
+                importProgress.setString(messages.get(messages.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    graph.replaceWith(get());
+                    System.out.println("Graph erfolgreich importiert!");
+                    zoomToFit();
+                    updateGraphState();
+                } catch (ExecutionException e) {
+                    System.err.println("Fehler beim Importieren des Graphen: " + e.getCause().getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    importProgress.setVisible(false);
+                    importButton.setEnabled(true);
+                }
+            }
+        }.execute();
+    }
+
 }
@@ -4,17 +4,51 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 
 class PanelPebbleGame extends Panel implements MouseListener, MouseMotionListener {
+    static final long MINIMIZING_TIME_BUDGET = 10000;
     JButton startMinimizingButton = new JButton("Start Minimizing");
+    private PebbleHeuristic heuristic;
     public PanelPebbleGame(Graph graph) {
         super(graph);
         JPanel bottomPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        startMinimizingButton.setFont(new Font("Arial", Font.BOLD, 20)); // Größere Schrift
+        startMinimizingButton.setPreferredSize(new Dimension(250, 50)); // Größerer Button
+        bottomPanel.add(startMinimizingButton);
         this.add(bottomPanel, BorderLayout.SOUTH);
 
         addMouseListener(this);
         addMouseMotionListener(this);
+        startMinimizingButton.addActionListener(e -> toggleMinimizing());
+    }
+
+    private void toggleMinimizing() {
+        if (heuristic != null) {
+            heuristic.cancel();
+            return;
+        }
+        heuristic = new PebbleHeuristic(graph);
+        heuristic.setConeMemo(ConeMemo.shared());
+        startMinimizingButton.setText("Stop Minimizing");
+        Thread thread = new Thread(() -> {
+            PebbleHeuristic.Result result = heuristic.run(MINIMIZING_TIME_BUDGET,
+                    Runtime.getRuntime().availableProcessors(),
+                    update -> SwingUtilities.invokeLater(() -> graphStateTextArea.setText(update.describe())));
+            try {
+                ConeMemo.shared().save(ConeMemo.DEFAULT_FILE);
+            } catch (IOException e) {
+                System.err.println("Fehler beim Speichern des Kegel-Caches: " + e.getMessage());
+            }
+            SwingUtilities.invokeLater(() -> {
+                graphStateTextArea.setText(result.describe());
+                startMinimizingButton.setText("Start Minimizing");
+                heuristic = null;
+            });
+        }, "pebble-minimizing");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     @Override
@@ -24,9 +58,10 @@ class PanelPebbleGame extends Panel implements MouseListener, MouseMotionListene
 
     @Override
     public void mouseClicked(MouseEvent e) {
+        Point p = toGraph(e);
         if (SwingUtilities.isLeftMouseButton(e)) {
             for (State node : graph.getStates()) {
-                if (node.contains(e.getX(), e.getY())) {
+                if (node.contains(p.x, p.y)) {
                     node.currentlyPebbled = false;
                     repaint();
                     break;
@@ -34,7 +69,7 @@ class PanelPebbleGame extends Panel implements MouseListener, MouseMotionListene
             }
         } else if (SwingUtilities.isRightMouseButton(e)) {
             for (State node : graph.getStates()) {
-                if (node.contains(e.getX(), e.getY()) && node.canBePebbled()) {
+                if (node.contains(p.x, p.y) && node.canBePebbled()) {
                     node.hasBeenPebbled = true;
                     node.currentlyPebbled = true;
                     if (graph.fullyPebbled()) {
@@ -0,0 +1,622 @@
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Anytime engine for the pebble number of graphs that are too large for an exact search.
+ * Lower bounds come from cheap structural arguments, upper bounds from greedy placement
+ * orders which are then improved by parallel simulated annealing until the time budget
+ * runs out or {@link #cancel()} is called.
+ * A strategy is an order in which every node is pebbled exactly once; pebbles are removed
+ * as soon as all successors of a node have been pebbled.
+ */
+class PebbleHeuristic {
+
+    interface Listener {
+        void update(Result result);
+    }
+
+    static class Result {
+        final int lowerBound;
+        final int upperBound;
+        final String lowerBoundReason;
+        final String upperBoundSource;
+        final List<State> strategy;
+        final boolean cyclic;
+
+        Result(int lowerBound, String lowerBoundReason, int upperBound, String upperBoundSource,
+               List<State> strategy, boolean cyclic) {
+            this.lowerBound = lowerBound;
+            this.lowerBoundReason = lowerBoundReason;
+            this.upperBound = upperBound;
+            this.upperBoundSource = upperBoundSource;
+            this.strategy = strategy;
+            this.cyclic = cyclic;
+        }
+
+        boolean isOptimal() {
+            return !cyclic && lowerBound == upperBound;
+        }
+
+        String describe() {
+            if (cyclic) {
+                return "graph contains a cycle, it cannot be fully pebbled";
+            }
+            StringBuilder sb = new StringBuilder();
+            sb.append("lower bound: ").append(lowerBound).append(" (").append(lowerBoundReason).append(")\n");
+            sb.append("upper bound: ").append(upperBound).append(" (").append(upperBoundSource).append(")\n");
+            sb.append(isOptimal() ? "optimal" : "gap: " + (upperBound - lowerBound)).append("\n");
+            sb.append("\nStrategy: \n");
+            int shown = Math.min(strategy.size(), MAX_STRATEGY_LENGTH);
+            for (int i = 0; i < shown; i++) {
+                sb.append(i == 0 ? "  " : ", ").append(strategy.get(i).getNumber());
+            }
+            if (shown < strategy.size()) {
+                sb.append(", ... (").append(strategy.size() - shown).append(" more)");
+            }
+            return sb.toString();
+        }
+    }
+
+    static final int MAX_STRATEGY_LENGTH = 200;
+    // part of the time budget the exact costs of small cones may take before annealing starts
+    static final double CONE_SHARE = 0.1;
+
+    private final State[] states;
+    private final int[][] predecessors;
+    private final int[][] successors;
+    private final int[] topologicalOrder;
+
+    private volatile boolean cancelled = false;
+    private Listener listener;
+    private ConeMemo coneMemo;
+
+    private volatile int lowerBound;
+    private String lowerBoundReason;
+    private int[] bestOrder;
+    private volatile int bestPeak;
+    private String bestSource;
+
+    public PebbleHeuristic(Graph graph) {
+        graph.initializeStateIndices();
+        int n = graph.getStates().size();
+        states = new State[n];
+        for (State state : graph.getStates()) {
+            states[state.getIndex()] = state;
+        }
+        predecessors = new int[n][];
+        successors = new int[n][];
+        for (int i = 0; i < n; i++) {
+            predecessors[i] = distinctIndices(states[i].incomingEdges, true);
+            successors[i] = distinctIndices(states[i].outgoingEdges, false);
+        }
+        topologicalOrder = topologicalOrder();
+    }
+
+    private static int[] distinctIndices(List<Edge> edges, boolean incoming) {
+        int[] indices = new int[edges.size()];
+        for (int i = 0; i < indices.length; i++) {
+            Edge edge = edges.get(i);
+            indices[i] = (incoming ? edge.startState : edge.endState).getIndex();
+        }
+        return Arrays.stream(indices).sorted().distinct().toArray();
+    }
+
+    // Kahn; returns null if the graph has a cycle
+    private int[] topologicalOrder() {
+        int n = states.length;
+        int[] missing = new int[n];
+        int[] order = new int[n];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            missing[i] = predecessors[i].length;
+            if (missing[i] == 0) {
+                order[size++] = i;
+            }
+        }
+        for (int head = 0; head < size; head++) {
+            for (int next : successors[order[head]]) {
+                if (--missing[next] == 0) {
+                    order[size++] = next;
+                }
+            }
+        }
+        return size == n ? order : null;
+    }
+
+    /** Also use the exact costs of small cones as lower bounds, memoized in the given memo. */
+    public void setConeMemo(ConeMemo coneMemo) {
+        this.coneMemo = coneMemo;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Runs until the bounds meet, the time budget is used up or the search is cancelled.
+     * The listener is called from worker threads whenever a bound improves.
+     */
+    public Result run(long timeBudgetMillis, int workers, Listener listener) {
+        this.listener = listener;
+        if (topologicalOrder == null) {
+            Result result = new Result(0, "", 0, "", new ArrayList<>(), true);
+            if (listener != null) {
+                listener.update(result);
+            }
+            return result;
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+
+        computeLowerBound();
+        offer(topologicalOrder, "topological order");
+        offer(demandDrivenOrder(), "demand-driven greedy");
+        long coneDeadline = System.nanoTime() + (long) (CONE_SHARE * TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis));
+        if (coneMemo != null && !isFinished(coneDeadline) && improveLowerBoundWithCones(coneDeadline) && listener != null) {
+            listener.update(currentResult());
+        }
+
+        if (!isFinished(deadline) && states.length > 2) {
+            ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+                Thread thread = new Thread(runnable, "pebble-annealing");
+                thread.setDaemon(true);
+                return thread;
+            });
+            for (int i = 0; i < workers; i++) {
+                long seed = 31L * i + System.nanoTime();
+                executor.submit(() -> anneal(new Random(seed), deadline));
+            }
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Math.max(0, deadline - System.nanoTime()) + 1, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+            }
+            executor.shutdownNow();
+        }
+        return currentResult();
+    }
+
+    private boolean isFinished(long deadline) {
+        return cancelled || bestPeak == lowerBound || System.nanoTime() >= deadline;
+    }
+
+    public synchronized Result currentResult() {
+        List<State> strategy = new ArrayList<>(bestOrder.length);
+        for (int index : bestOrder) {
+            strategy.add(states[index]);
+        }
+        return new Result(lowerBound, lowerBoundReason, bestPeak, bestSource, strategy, false);
+    }
+
+    private void offer(int[] order, String source) {
+        int peak = peak(order, new int[states.length]);
+        Result result;
+        synchronized (this) {
+            if (bestOrder != null && peak >= bestPeak) {
+                return;
+            }
+            bestOrder = order.clone();
+            bestPeak = peak;
+            bestSource = source;
+            result = currentResult();
+        }
+        if (listener != null) {
+            listener.update(result);
+        }
+    }
+
+    // ---------- lower bounds ----------
+
+    private void computeLowerBound() {
+        int n = states.length;
+        lowerBound = n == 0 ? 0 : 1;
+        lowerBoundReason = "trivial";
+
+        // a node can only be pebbled while all of its predecessors hold a pebble
+        for (int i = 0; i < n; i++) {
+            if (predecessors[i].length > 0 && predecessors[i].length + 1 > lowerBound) {
+                lowerBound = predecessors[i].length + 1;
+                lowerBoundReason = "in-degree of node " + states[i].getNumber();
+            }
+        }
+
+        // embedded in-trees: pebbling a subgraph never needs more pebbles than the whole graph
+        int[] treeCost = new int[n];
+        for (int v : topologicalOrder) {
+            treeCost[v] = -1;
+            boolean isTree = true;
+            for (int u : predecessors[v]) {
+                if (treeCost[u] < 0 || successors[u].length != 1) {
+                    isTree = false;
+                    break;
+                }
+            }
+            if (isTree) {
+                treeCost[v] = treeCost(predecessors[v], treeCost);
+                if (treeCost[v] > lowerBound) {
+                    lowerBound = treeCost[v];
+                    lowerBoundReason = "tree below node " + states[v].getNumber();
+                }
+            }
+        }
+    }
+
+    // the cone of a node is a subgraph too; every isomorphism class is looked up once
+    private boolean improveLowerBoundWithCones(long deadline) {
+        long[] hashes = ConeMemo.coneHashes(predecessors, topologicalOrder);
+        Set<Long> seen = new HashSet<>();
+        boolean improved = false;
+        for (int v : topologicalOrder) {
+            if (isFinished(deadline)) {
+                break;
+            }
+            if (predecessors[v].length == 0 || !seen.add(hashes[v])) {
+                continue;
+            }
+            ConeMemo.Entry entry = coneMemo.costOf(v, predecessors, hashes);
+            synchronized (this) {
+                if (entry != null && entry.pebbles > lowerBound) {
+                    lowerBound = entry.pebbles;
+                    lowerBoundReason = "cone of node " + states[v].getNumber();
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    // Sethi-Ullman: pebble the expensive subtrees first, every finished one keeps a pebble
+    private static int treeCost(int[] children, int[] cost) {
+        if (children.length == 0) {
+            return 1;
+        }
+        int[] sorted = new int[children.length];
+        for (int i = 0; i < children.length; i++) {
+            sorted[i] = -cost[children[i]];
+        }
+        Arrays.sort(sorted);
+        int result = children.length + 1;
+        for (int i = 0; i < sorted.length; i++) {
+            result = Math.max(result, -sorted[i] + i);
+        }
+        return result;
+    }
+
+    // ---------- upper bounds ----------
+
+    /** Number of pebbles needed to pebble the nodes in the given topological order. */
+    private int peak(int[] order, int[] remaining) {
+        return (int) score(order, remaining);
+    }
+
+    // integer part: peak, fractional part: pebbles summed over time, to break ties during annealing
+    private double score(int[] order, int[] remaining) {
+        int n = states.length;
+        for (int i = 0; i < n; i++) {
+            remaining[i] = successors[i].length;
+        }
+        int pebbles = 0;
+        int peak = 0;
+        long area = 0;
+        for (int v : order) {
+            pebbles++;
+            peak = Math.max(peak, pebbles);
+            for (int u : predecessors[v]) {
+                if (--remaining[u] == 0) {
+                    pebbles--;
+                }
+            }
+            if (remaining[v] == 0) {
+                pebbles--;
+            }
+            area += pebbles;
+        }
+        return peak + area / ((double) n * n + 1);
+    }
+
+    // pebble every sink by recursively pebbling its most expensive predecessors first
+    private int[] demandDrivenOrder() {
+        int n = states.length;
+        int[] estimate = new int[n];
+        for (int v : topologicalOrder) {
+            estimate[v] = treeCost(predecessors[v], estimate);
+        }
+        int[][] orderedPredecessors = new int[n][];
+        for (int v = 0; v < n; v++) {
+            orderedPredecessors[v] = byDescendingEstimate(predecessors[v], estimate);
+        }
+        int[] order = new int[n];
+        int size = 0;
+        boolean[] placed = new boolean[n];
+        Deque<int[]> stack = new ArrayDeque<>();
+        for (int sink = 0; sink < n; sink++) {
+            if (successors[sink].length > 0 || placed[sink]) {
+                continue;
+            }
+            stack.push(new int[]{sink, 0});
+            while (!stack.isEmpty()) {
+                int[] frame = stack.peek();
+                int v = frame[0];
+                int[] sortedPredecessors = orderedPredecessors[v];
+                while (frame[1] < sortedPredecessors.length && placed[sortedPredecessors[frame[1]]]) {
+                    frame[1]++;
+                }
+                if (frame[1] < sortedPredecessors.length) {
+                    stack.push(new int[]{sortedPredecessors[frame[1]], 0});
+                } else {
+                    stack.pop();
+                    if (!placed[v]) {
+                        placed[v] = true;
+                        order[size++] = v;
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    private static int[] byDescendingEstimate(int[] nodes, int[] estimate) {
+        Integer[] boxed = new Integer[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            boxed[i] = nodes[i];
+        }
+        Arrays.sort(boxed, (a, b) -> Integer.compare(estimate[b], estimate[a]));
+        int[] sorted = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            sorted[i] = boxed[i];
+        }
+        return sorted;
+    }
+
+    // moves single nodes to another position inside the window allowed by their neighbours
+    private void anneal(Random random, long deadline) {
+        int n = states.length;
+        Schedule schedule;
+        synchronized (this) {
+            schedule = new Schedule(bestOrder);
+        }
+        double current = schedule.score();
+        // the fractional part of a score changes by about 1/n per moved position
+        double startTemperature = 1.0 / n;
+        double temperature = startTemperature;
+        long steps = 0;
+
+        while (!isFinished(deadline)) {
+            int from = random.nextInt(n);
+            int v = schedule.order[from];
+            int low = 0;
+            for (int u : predecessors[v]) {
+                low = Math.max(low, schedule.position[u] + 1);
+            }
+            int high = n - 1;
+            for (int w : successors[v]) {
+                high = Math.min(high, schedule.position[w] - 1);
+            }
+            if (low >= high) {
+                continue;
+            }
+            int to = low + random.nextInt(high - low + 1);
+            if (to == from) {
+                continue;
+            }
+            schedule.move(from, to);
+            double candidate = schedule.score();
+            if (candidate <= current || random.nextDouble() < Math.exp((current - candidate) / temperature)) {
+                if (schedule.peak < bestPeak) {
+                    offer(schedule.order, "simulated annealing");
+                }
+                current = candidate;
+            } else {
+                schedule.undo();
+            }
+
+            temperature *= 0.9995;
+            if (++steps % 20000 == 0) {
+                temperature = startTemperature;
+            }
+        }
+    }
+
+    /**
+     * A placement order with its pebble profile: profile[t] pebbles are on the graph right after
+     * order[t] has been pebbled. A node holds its pebble from its own position up to the position
+     * of its last successor, so moving a node from one position to another only changes the
+     * profile in between, and there only through the moved node and its predecessors.
+     */
+    private class Schedule {
+        final int[] order;
+        final int[] position;
+        final int[] lastSuccessor; // -1 for sinks
+        final int[] profile;
+        final int[] histogram; // number of positions per profile value, to keep track of the peak
+        long sum;
+        int peak;
+
+        private final int[] others;
+        private final int[] difference;
+        private final int[] marks;
+        private int mark;
+        // to undo the last move
+        private int movedFrom;
+        private int movedTo;
+        private int previousPeak;
+        private long previousSum;
+        private final int[] previousProfile;
+        private final int[] previousLastSuccessor;
+
+        Schedule(int[] initialOrder) {
+            int n = initialOrder.length;
+            order = initialOrder.clone();
+            position = new int[n];
+            for (int i = 0; i < n; i++) {
+                position[order[i]] = i;
+            }
+            lastSuccessor = new int[n];
+            for (int u = 0; u < n; u++) {
+                lastSuccessor[u] = latestSuccessor(u);
+            }
+            profile = new int[n];
+            difference = new int[n + 1];
+            for (int u = 0; u < n; u++) {
+                difference[position[u]]++;
+                difference[release(u) + 1]--;
+            }
+            histogram = new int[n + 2];
+            int pebbles = 0;
+            for (int t = 0; t < n; t++) {
+                pebbles += difference[t];
+                profile[t] = pebbles;
+                histogram[pebbles]++;
+                sum += pebbles;
+                peak = Math.max(peak, pebbles);
+            }
+            others = new int[n];
+            marks = new int[n];
+            previousProfile = new int[n];
+            previousLastSuccessor = new int[n];
+        }
+
+        // same value as PebbleHeuristic.score(order, ...): the profile summed up counts every node once more
+        double score() {
+            int n = order.length;
+            return peak + (sum - n) / ((double) n * n + 1);
+        }
+
+        private int release(int u) {
+            return lastSuccessor[u] < 0 ? position[u] : position[lastSuccessor[u]];
+        }
+
+        private int latestSuccessor(int u) {
+            int latest = -1;
+            for (int w : successors[u]) {
+                if (latest < 0 || position[w] > position[latest]) {
+                    latest = w;
+                }
+            }
+            return latest;
+        }
+
+        private void cover(int start, int end, int low, int high, int delta) {
+            start = Math.max(start, low);
+            end = Math.min(end, high);
+            if (start <= end) {
+                difference[start - low] += delta;
+                difference[end + 1 - low] -= delta;
+            }
+        }
+
+        void move(int from, int to) {
+            int v = order[from];
+            int low = Math.min(from, to);
+            int high = Math.max(from, to);
+            int length = high - low + 1;
+            mark++;
+            marks[v] = mark;
+            for (int u : predecessors[v]) {
+                marks[u] = mark;
+            }
+
+            // pebbles of all other nodes inside the window, before the move
+            Arrays.fill(difference, 0, length + 1, 0);
+            cover(position[v], release(v), low, high, -1);
+            for (int u : predecessors[v]) {
+                cover(position[u], release(u), low, high, -1);
+            }
+            int pebbles = 0;
+            for (int i = 0; i < length; i++) {
+                pebbles += difference[i];
+                others[i] = profile[low + i] + pebbles;
+                previousProfile[i] = profile[low + i];
+            }
+            // other pebbles released at the target position stay released when everything shifts left
+            int released = 0;
+            if (from < to) {
+                int w = order[to];
+                released = lastSuccessor[w] < 0 ? 1 : 0;
+                for (int x : predecessors[w]) {
+                    if (marks[x] != mark && lastSuccessor[x] == w) {
+                        released++;
+                    }
+                }
+            }
+
+            PebbleHeuristic.move(order, position, from, to);
+            movedFrom = from;
+            movedTo = to;
+            previousPeak = peak;
+            previousSum = sum;
+
+            // pebbles of v and its predecessors after the move
+            Arrays.fill(difference, 0, length + 1, 0);
+            cover(position[v], release(v), low, high, 1);
+            int[] predecessorsOfV = predecessors[v];
+            for (int i = 0; i < predecessorsOfV.length; i++) {
+                int u = predecessorsOfV[i];
+                previousLastSuccessor[i] = lastSuccessor[u];
+                lastSuccessor[u] = latestSuccessor(u);
+                cover(position[u], release(u), low, high, 1);
+            }
+
+            // the other nodes in the window shifted by one position
+            int highest = 0;
+            pebbles = 0;
+            for (int i = 0; i < length; i++) {
+                pebbles += difference[i];
+                int shifted;
+                if (from < to) {
+                    shifted = i < length - 1 ? others[i + 1] : others[i] - released;
+                } else {
+                    shifted = i > 0 ? others[i - 1] : others[0] - 1;
+                }
+                set(low + i, shifted + pebbles);
+                highest = Math.max(highest, shifted + pebbles);
+            }
+            if (highest > peak) {
+                peak = highest;
+            }
+            while (histogram[peak] == 0) {
+                peak--;
+            }
+        }
+
+        void undo() {
+            int v = order[movedTo];
+            PebbleHeuristic.move(order, position, movedTo, movedFrom);
+            int[] predecessorsOfV = predecessors[v];
+            for (int i = 0; i < predecessorsOfV.length; i++) {
+                lastSuccessor[predecessorsOfV[i]] = previousLastSuccessor[i];
+            }
+            int low = Math.min(movedFrom, movedTo);
+            int high = Math.max(movedFrom, movedTo);
+            for (int t = low; t <= high; t++) {
+                set(t, previousProfile[t - low]);
+            }
+            peak = previousPeak;
+            sum = previousSum;
+        }
+
+        private void set(int t, int pebbles) {
+            histogram[profile[t]]--;
+            histogram[pebbles]++;
+            sum += pebbles - profile[t];
+            profile[t] = pebbles;
+        }
+    }
+
+    private static void move(int[] order, int[] position, int from, int to) {
+        int v = order[from];
+        if (from < to) {
+            System.arraycopy(order, from + 1, order, from, to - from);
+        } else {
+            System.arraycopy(order, to, order, to + 1, from - to);
+        }
+        order[to] = v;
+        for (int i = Math.min(from, to); i <= Math.max(from, to); i++) {
+            position[order[i]] = i;
+        }
+    }
+}
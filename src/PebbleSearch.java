@@ -0,0 +1,291 @@
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Exact minimum number of pebbles by breadth-first search over all configurations.
+ * A configuration is the set of currently pebbled nodes plus the set of nodes that have
+ * been pebbled at some point, packed into 2n bits. Visited configurations are kept in a
+ * {@link ConfigurationStore}, the frontier of each level in a file, so the search is only
+ * bounded by disk space. The successors of a level are collected first and checked against
+ * the visited set together when the level is done. A checkpoint is written regularly; a search
+ * started on the same work directory continues from the last one, and pebble counts already
+ * ruled out there are not searched again.
+ */
+class PebbleSearch {
+    static final long CHECKPOINT_INTERVAL_MILLIS = 60000;
+    static final long DEFAULT_MEMORY_BUDGET = 256L * 1024 * 1024;
+    static final String RULED_OUT_SUFFIX = ".unsolvable";
+
+    private final int n;
+    private final int words;
+    private final long[][] predecessorMasks;
+    private final long[] fullMask;
+    private final File directory;
+    private final long memoryBudget;
+
+    public PebbleSearch(Graph graph, File directory, long memoryBudget) {
+        graph.initializeStateIndices();
+        this.n = graph.getStates().size();
+        this.words = (2 * n + 63) / 64;
+        this.directory = directory;
+        this.memoryBudget = memoryBudget;
+        predecessorMasks = new long[n][words];
+        fullMask = new long[words];
+        for (State state : graph.getStates()) {
+            for (Edge edge : state.incomingEdges) {
+                set(predecessorMasks[state.getIndex()], edge.startState.getIndex());
+            }
+            set(fullMask, n + state.getIndex());
+        }
+    }
+
+    private static void set(long[] key, int bit) {
+        key[bit >>> 6] |= 1L << bit;
+    }
+
+    private static void clear(long[] key, int bit) {
+        key[bit >>> 6] &= ~(1L << bit);
+    }
+
+    private static boolean get(long[] key, int bit) {
+        return (key[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /** Smallest number of pebbles, starting the search at the given lower bound; -1 if the graph has a cycle. */
+    public int minimumPebbles(int lowerBound) throws IOException {
+        for (int pebbles = Math.max(Math.max(1, lowerBound), highestRuledOut() + 1); pebbles <= n; pebbles++) {
+            if (solvable(pebbles)) {
+                return pebbles;
+            }
+        }
+        return n == 0 ? 0 : -1;
+    }
+
+    // fewer pebbles than a ruled out count never suffice either
+    private int highestRuledOut() {
+        int highest = 0;
+        String[] names = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith("pebbles-") && name.endsWith(RULED_OUT_SUFFIX)) {
+                    try {
+                        int pebbles = Integer.parseInt(name.substring(8, name.length() - RULED_OUT_SUFFIX.length()));
+                        highest = Math.max(highest, pebbles);
+                    } catch (NumberFormatException e) {
+                        // keine Markierung von uns
+                    }
+                }
+            }
+        }
+        return highest;
+    }
+
+    public boolean solvable(int pebbles) throws IOException {
+        File work = new File(directory, "pebbles-" + pebbles);
+        File ruledOut = new File(directory, "pebbles-" + pebbles + RULED_OUT_SUFFIX);
+        if (pebbles <= highestRuledOut()) {
+            deleteDirectory(work);
+            return false;
+        }
+        File checkpoint = new File(work, "checkpoint");
+        work.mkdirs();
+        File old = new File(work, "checkpoint.old");
+        if (!checkpoint.exists() && old.exists()) {
+            old.renameTo(checkpoint); // crashed while swapping checkpoints
+        }
+
+        ConfigurationStore store;
+        int level = 0;
+        long consumed = 0;
+        long nextLength = 0;
+        File meta = new File(checkpoint, "search.meta");
+        if (meta.exists()) {
+            try (DataInputStream in = new DataInputStream(new FileInputStream(meta))) {
+                level = in.readInt();
+                consumed = in.readLong();
+                nextLength = in.readLong();
+            }
+            store = ConfigurationStore.restore(checkpoint, new File(work, "store"), memoryBudget);
+            System.out.println("resuming " + pebbles + " pebbles at level " + level + " with " + store.size() + " configurations");
+        } else {
+            store = new ConfigurationStore(words, new File(work, "store"), memoryBudget);
+            store.offer(new long[words]);
+            try (DataOutputStream out = openFrontier(frontierFile(work, 0), 0)) {
+                store.merge(out);
+            }
+        }
+
+        boolean solvable;
+        try {
+            solvable = search(work, store, pebbles, level, consumed, nextLength);
+        } finally {
+            store.close();
+        }
+        if (!solvable) {
+            // recorded before the work directory goes away, so a restarted search skips this count
+            ruledOut.createNewFile();
+        }
+        deleteDirectory(work);
+        return solvable;
+    }
+
+    private boolean search(File work, ConfigurationStore store, int pebbles, int level, long consumed,
+                           long nextLength) throws IOException {
+        long lastCheckpoint = System.currentTimeMillis();
+        long[] key = new long[words];
+        long[] next = new long[words];
+        while (true) {
+            File following = frontierFile(work, level + 1);
+            long expanded = consumed;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(frontierFile(work, level)), 1 << 16));
+                 DataOutputStream out = openFrontier(following, nextLength)) {
+                in.skipNBytes(consumed * words * Long.BYTES);
+                while (readKey(in, key)) {
+                    if (expand(key, next, pebbles, store)) {
+                        return true;
+                    }
+                    expanded++;
+                    if (System.currentTimeMillis() - lastCheckpoint > CHECKPOINT_INTERVAL_MILLIS) {
+                        out.flush();
+                        writeCheckpoint(work, store, level, expanded, following.length());
+                        lastCheckpoint = System.currentTimeMillis();
+                    }
+                }
+                store.merge(out);
+            }
+            if (following.length() == 0) {
+                return false;
+            }
+            level++;
+            consumed = 0;
+            nextLength = 0;
+            if (System.currentTimeMillis() - lastCheckpoint > CHECKPOINT_INTERVAL_MILLIS) {
+                writeCheckpoint(work, store, level, 0, 0);
+                lastCheckpoint = System.currentTimeMillis();
+            }
+        }
+    }
+
+    // offers all successors of the configuration to the store; true if one is the goal
+    private boolean expand(long[] key, long[] next, int pebbles, ConfigurationStore store) throws IOException {
+        int placed = 0;
+        for (int w = 0; w < words; w++) {
+            long currentBits = w == (n >>> 6) ? key[w] & ((1L << n) - 1) : w < (n >>> 6) ? key[w] : 0;
+            placed += Long.bitCount(currentBits);
+        }
+        for (int v = 0; v < n; v++) {
+            System.arraycopy(key, 0, next, 0, words);
+            if (get(key, v)) {
+                clear(next, v);
+            } else if (placed < pebbles && predecessorsPebbled(key, v)) {
+                set(next, v);
+                set(next, n + v);
+                if (isGoal(next)) {
+                    return true;
+                }
+            } else {
+                continue;
+            }
+            store.offer(next);
+        }
+        return false;
+    }
+
+    private boolean predecessorsPebbled(long[] key, int v) {
+        long[] mask = predecessorMasks[v];
+        for (int w = 0; w < words; w++) {
+            if ((key[w] & mask[w]) != mask[w]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isGoal(long[] key) {
+        for (int w = 0; w < words; w++) {
+            if ((key[w] & fullMask[w]) != fullMask[w]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the checkpoint is built next to the old one and swapped in, so a crash always leaves a complete one
+    private void writeCheckpoint(File work, ConfigurationStore store, int level, long consumed, long nextLength)
+            throws IOException {
+        File temporary = new File(work, "checkpoint.tmp");
+        File checkpoint = new File(work, "checkpoint");
+        File old = new File(work, "checkpoint.old");
+        deleteDirectory(temporary);
+        store.checkpoint(temporary);
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(temporary, "search.meta")))) {
+            out.writeInt(level);
+            out.writeLong(consumed);
+            out.writeLong(nextLength);
+        }
+        deleteDirectory(old);
+        checkpoint.renameTo(old);
+        temporary.renameTo(checkpoint);
+        deleteDirectory(old);
+        // older levels are not needed to resume from this checkpoint any more
+        for (int earlier = level - 1; frontierFile(work, earlier).delete(); earlier--) {
+        }
+        System.out.println("checkpoint at level " + level + ", " + store.size() + " configurations");
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                deleteDirectory(file);
+            }
+        }
+        directory.delete();
+    }
+
+    private static File frontierFile(File work, int level) {
+        return new File(work, "frontier-" + level + ".bin");
+    }
+
+    // truncates to the length recorded in the checkpoint and appends from there
+    private static DataOutputStream openFrontier(File file, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), 1 << 16));
+    }
+
+    private boolean readKey(DataInputStream in, long[] key) throws IOException {
+        try {
+            for (int w = 0; w < words; w++) {
+                key[w] = in.readLong();
+            }
+            return true;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: PebbleSearch <graph file> <work directory> [memory budget in MB]");
+            return;
+        }
+        Graph graph = new Graph();
+        graph.importGraph(new File(args[0]));
+        long budget = args.length > 2 ? Long.parseLong(args[2]) * 1024 * 1024 : DEFAULT_MEMORY_BUDGET;
+        PebbleHeuristic.Result bounds = new PebbleHeuristic(graph).run(1000, 1, null);
+        if (bounds.cyclic) {
+            System.out.println(bounds.describe());
+            return;
+        }
+        if (bounds.isOptimal()) {
+            System.out.println("minimum pebbles: " + bounds.upperBound);
+            return;
+        }
+        int result = new PebbleSearch(graph, new File(args[1]), budget).minimumPebbles(bounds.lowerBound);
+        System.out.println("minimum pebbles: " + result);
+    }
+}
@@ -3,12 +3,17 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 class State {
+    private static final AtomicInteger nextId = new AtomicInteger();
+
     int x, y;
 
     int radius;
     int number;
+    // eindeutig pro Objekt, Knotennummern koennen doppelt vorkommen
+    final int id = nextId.getAndIncrement();
 
     int algorithmArrayIndex;
 
@@ -94,6 +99,10 @@ class State {
         }
     }
     public void draw(Graphics g) {
+        draw(g, true);
+    }
+
+    public void draw(Graphics g, boolean withLabel) {
         g.setColor(Color.white);
         if(this.hasBeenPebbled) {
             g.setColor(Color.green);
@@ -105,6 +114,9 @@ class State {
         g.setColor(Color.BLACK);
 
         g.drawOval(x - radius, y - radius, radius*2, radius*2);
+        if (!withLabel) {
+            return;
+        }
 
         Font font = new Font("Arial", Font.BOLD, 16);
         g.setFont(font);
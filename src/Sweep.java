@@ -0,0 +1,430 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Runs validation and pebble bounds over many graphs with several worker JVMs.
+ * The coordinator splits the tasks (graph files or generator specs, see {@link GraphGenerator})
+ * into shards, hands them out to whichever worker asks next and appends every result to a
+ * tab-separated log. Tasks already in the log are skipped, so a crashed sweep is resumed by
+ * starting it again with the same log. Shards of a worker that disappears are handed out again;
+ * a task that takes down MAX_ATTEMPTS workers is logged as crashed instead. A worker that sends
+ * nothing for the task timeout counts as hung: it is disconnected (and killed if the coordinator
+ * started it) and its task is handled like one that crashed, but logged as timeout.
+ *
+ * Protocol, one line per message, fields separated by tabs:
+ *   worker: HELLO name                 coordinator: CONFIG budget
+ *   worker: NEXT                       coordinator: TASK spec ... END, or DONE
+ *   worker: RESULT spec status ...     (one per task, as soon as it is finished)
+ * Workers only need host and port, so one started by hand or on another machine works the same.
+ *
+ * usage: Sweep coordinator --log results.tsv [--workers n] [--port p] [--bind address]
+ *                          [--budget ms] [--timeout ms] [--shard size] task... (or @file with one task per line)
+ *        Sweep worker host port
+ */
+class Sweep {
+    static final long DEFAULT_BUDGET_MILLIS = 2000;
+    static final String[] COLUMNS = {"task", "status", "states", "edges", "validation", "lower", "upper", "millis"};
+    static final int MAX_SHARD_SIZE = 64;
+    static final int MAX_ATTEMPTS = 2;
+    static final int RESTARTS_PER_WORKER = 3;
+    // time to load a large graph file, on top of the budget
+    static final long LOAD_ALLOWANCE_MILLIS = 60000;
+
+    private final Deque<List<String>> shards = new ArrayDeque<>();
+    private final Set<String> finished = new HashSet<>();
+    private final Map<String, Integer> attempts = new HashMap<>();
+    private int connections = 0;
+    private final Set<Long> launched = new HashSet<>(); // pids of the workers started here
+    private final FileOutputStream logStream;
+    private final Writer log;
+    private final long budget;
+    private final long timeout;
+    private int remaining;
+
+    private Sweep(File logFile, List<String> tasks, int shardSize, long budget, long timeout) throws IOException {
+        this.budget = budget;
+        this.timeout = timeout;
+        this.remaining = tasks.size();
+        for (int i = 0; i < tasks.size(); i += shardSize) {
+            shards.add(new ArrayList<>(tasks.subList(i, Math.min(tasks.size(), i + shardSize))));
+        }
+        boolean fresh = !logFile.exists() || logFile.length() == 0;
+        boolean endsWithNewline = fresh || endsWithNewline(logFile);
+        logStream = new FileOutputStream(logFile, true);
+        log = new BufferedWriter(new OutputStreamWriter(logStream, StandardCharsets.UTF_8));
+        if (fresh) {
+            log.write(String.join("\t", COLUMNS) + "\n");
+        } else if (!endsWithNewline) {
+            log.write("\n"); // the last line was cut off by a crash
+        }
+        log.flush();
+    }
+
+    private static boolean endsWithNewline(File file) throws IOException {
+        try (RandomAccessFile access = new RandomAccessFile(file, "r")) {
+            access.seek(file.length() - 1);
+            return access.read() == '\n';
+        }
+    }
+
+    /** Tasks with a complete line in the log; cut off lines are ignored and run again. */
+    static Set<String> finishedTasks(File logFile) throws IOException {
+        Set<String> done = new HashSet<>();
+        if (!logFile.exists()) {
+            return done;
+        }
+        for (String line : Files.readAllLines(logFile.toPath(), StandardCharsets.UTF_8)) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length == COLUMNS.length && !line.startsWith(COLUMNS[0] + "\t")) {
+                done.add(fields[0]);
+            }
+        }
+        return done;
+    }
+
+    // ---------- coordinator ----------
+
+    private synchronized List<String> takeShard() throws InterruptedException {
+        while (shards.isEmpty() && remaining > 0) {
+            wait();
+        }
+        return shards.poll();
+    }
+
+    // a worker runs its shard in order, so it went down on the first task without a result
+    private synchronized void giveBack(List<String> tasks, String status) throws IOException {
+        tasks.removeAll(finished);
+        if (tasks.isEmpty()) {
+            return;
+        }
+        String suspect = tasks.remove(0);
+        int failures = attempts.merge(suspect, 1, Integer::sum);
+        if (failures >= MAX_ATTEMPTS) {
+            System.err.println(suspect + " took down " + failures + " workers, logged as " + status);
+            record(String.join("\t", suspect, status, "", "", "", "", "", ""));
+        } else {
+            shards.addLast(new ArrayList<>(List.of(suspect)));
+        }
+        if (!tasks.isEmpty()) {
+            shards.addFirst(new ArrayList<>(tasks));
+        }
+        notifyAll();
+    }
+
+    private synchronized void record(String line) throws IOException {
+        String task = line.split("\t", 2)[0];
+        if (finished.add(task)) {
+            log.write(line + "\n");
+            log.flush();
+            remaining--;
+            if (remaining == 0) {
+                notifyAll();
+            }
+        }
+    }
+
+    private synchronized int remaining() {
+        return remaining;
+    }
+
+    private synchronized void connected(int delta) {
+        connections += delta;
+    }
+
+    private synchronized int connections() {
+        return connections;
+    }
+
+    private synchronized void launched(Process process) {
+        launched.add(process.pid());
+    }
+
+    // only workers started by this coordinator are killed, a pid from another machine means nothing here
+    private synchronized void kill(String pid) {
+        try {
+            if (launched.contains(Long.parseLong(pid))) {
+                ProcessHandle.of(Long.parseLong(pid)).ifPresent(ProcessHandle::destroyForcibly);
+            }
+        } catch (NumberFormatException e) {
+            // von Hand gestarteter Worker mit anderem Namen
+        }
+    }
+
+    private synchronized void force() throws IOException {
+        logStream.getChannel().force(false);
+    }
+
+    private void serve(Socket socket) {
+        List<String> inFlight = new ArrayList<>();
+        String status = "crashed";
+        connected(1);
+        try (Socket connection = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8))) {
+            // a worker sends a result at least once per task, or asks for the next shard
+            connection.setSoTimeout((int) Math.min(Integer.MAX_VALUE, timeout));
+            String line = in.readLine();
+            if (line == null || !line.startsWith("HELLO")) {
+                return;
+            }
+            String worker = line.substring("HELLO".length()).trim();
+            out.print("CONFIG\t" + budget + "\n");
+            out.flush();
+            try {
+                while ((line = in.readLine()) != null) {
+                    if (line.equals("NEXT")) {
+                        List<String> shard = takeShard();
+                        if (shard == null) {
+                            out.print("DONE\n");
+                            out.flush();
+                            return;
+                        }
+                        inFlight.addAll(shard);
+                        for (String task : shard) {
+                            out.print("TASK\t" + task + "\n");
+                        }
+                        out.print("END\n");
+                        out.flush();
+                    } else if (line.startsWith("RESULT\t")) {
+                        String result = line.substring("RESULT\t".length());
+                        record(result);
+                        inFlight.remove(result.split("\t", 2)[0]);
+                    }
+                }
+            } catch (SocketTimeoutException e) {
+                System.err.println("worker " + worker + " sent nothing for " + timeout + " ms, disconnecting it");
+                status = "timeout";
+                kill(worker);
+            }
+        } catch (IOException e) {
+            System.err.println("worker lost: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connected(-1);
+            try {
+                giveBack(inFlight, status);
+            } catch (IOException e) {
+                System.err.println("could not write the log: " + e.getMessage());
+            }
+        }
+    }
+
+    private static Process launchWorker(int port) throws IOException {
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), "Sweep", "worker",
+                "localhost", String.valueOf(port))
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    /** Returns false if the sweep stopped with tasks left because all workers died. */
+    static boolean coordinate(File logFile, List<String> allTasks, int workers, int port, InetAddress bind,
+                              long budget, long timeout, int shardSize) throws IOException, InterruptedException {
+        Set<String> done = finishedTasks(logFile);
+        List<String> tasks = new ArrayList<>();
+        for (String task : new LinkedHashSet<>(allTasks)) {
+            if (!done.contains(task)) {
+                tasks.add(task);
+            }
+        }
+        System.out.println((allTasks.size() - tasks.size()) + " of " + allTasks.size() + " tasks already in " + logFile);
+        if (tasks.isEmpty()) {
+            return true;
+        }
+        if (shardSize <= 0) {
+            shardSize = Math.max(1, Math.min(MAX_SHARD_SIZE, tasks.size() / (4 * Math.max(1, workers))));
+        }
+
+        Sweep sweep = new Sweep(logFile, tasks, shardSize, budget, timeout);
+        try (ServerSocket server = new ServerSocket(port, 50, bind)) {
+            System.out.println("coordinator listening on " + bind.getHostAddress() + ":" + server.getLocalPort());
+            Thread acceptor = new Thread(() -> {
+                while (!server.isClosed()) {
+                    try {
+                        Socket socket = server.accept();
+                        Thread handler = new Thread(() -> sweep.serve(socket), "sweep-connection");
+                        handler.setDaemon(true);
+                        handler.start();
+                    } catch (IOException e) {
+                        return; // closed
+                    }
+                }
+            }, "sweep-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            List<Process> processes = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                processes.add(launchWorker(server.getLocalPort()));
+                sweep.launched(processes.get(i));
+            }
+            int restarts = 0;
+            long start = System.nanoTime();
+            while (sweep.remaining() > 0) {
+                synchronized (sweep) {
+                    sweep.wait(1000);
+                }
+                sweep.force();
+                for (int i = 0; i < processes.size(); i++) {
+                    if (!processes.get(i).isAlive() && sweep.remaining() > 0 && restarts < RESTARTS_PER_WORKER * workers) {
+                        System.err.println("worker exited with " + processes.get(i).exitValue() + ", starting a new one");
+                        processes.set(i, launchWorker(server.getLocalPort()));
+                        sweep.launched(processes.get(i));
+                        restarts++;
+                    }
+                }
+                if (workers > 0 && restarts >= RESTARTS_PER_WORKER * workers && sweep.remaining() > 0
+                        && sweep.connections() == 0 && processes.stream().noneMatch(Process::isAlive)) {
+                    System.err.println("all workers died and no restarts are left, " + sweep.remaining()
+                            + " tasks not run; start the sweep again to continue");
+                    return false;
+                }
+                int finished = tasks.size() - sweep.remaining();
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%d of %d tasks done, %.1f tasks/s%n", finished, tasks.size(), finished / seconds);
+            }
+            sweep.force();
+            for (Process process : processes) {
+                if (!process.waitFor(10, java.util.concurrent.TimeUnit.SECONDS)) {
+                    process.destroy();
+                }
+            }
+            return true;
+        } finally {
+            sweep.log.close();
+        }
+    }
+
+    // ---------- worker ----------
+
+    static void work(String host, int port) throws IOException {
+        try (Socket socket = new Socket(host, port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            out.print("HELLO\t" + ProcessHandle.current().pid() + "\n");
+            out.flush();
+            String line = in.readLine();
+            if (line == null || !line.startsWith("CONFIG\t")) {
+                return;
+            }
+            long budget = Long.parseLong(line.substring("CONFIG\t".length()));
+            while (true) {
+                out.print("NEXT\n");
+                out.flush();
+                List<String> shard = new ArrayList<>();
+                while ((line = in.readLine()) != null && line.startsWith("TASK\t")) {
+                    shard.add(line.substring("TASK\t".length()));
+                }
+                if (line == null || line.equals("DONE")) {
+                    return;
+                }
+                for (String task : shard) {
+                    out.print("RESULT\t" + run(task, budget) + "\n");
+                    out.flush();
+                }
+            }
+        }
+    }
+
+    /** One log line for the task: the columns of {@link #COLUMNS}, separated by tabs. */
+    static String run(String task, long budget) {
+        long start = System.nanoTime();
+        try {
+            Graph graph;
+            if (GraphGenerator.isSpec(task)) {
+                graph = GraphGenerator.generate(task);
+            } else {
+                graph = new Graph();
+                graph.readGraph(new File(task), null);
+            }
+            String validation = graph.validate();
+            PebbleHeuristic.Result bounds = new PebbleHeuristic(graph).run(budget, 1, null);
+            return String.join("\t", task, bounds.cyclic ? "cyclic" : "ok",
+                    String.valueOf(graph.getStates().size()), String.valueOf(graph.getEdges().size()), clean(validation),
+                    String.valueOf(bounds.lowerBound), String.valueOf(bounds.upperBound),
+                    String.valueOf((System.nanoTime() - start) / 1000000));
+        } catch (IOException | RuntimeException e) {
+            return String.join("\t", task, clean("error: " + e), "", "", "", "", "",
+                    String.valueOf((System.nanoTime() - start) / 1000000));
+        }
+    }
+
+    private static String clean(String text) {
+        return text.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ').trim();
+    }
+
+    // ---------- command line ----------
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 3 && args[0].equals("worker")) {
+            work(args[1], Integer.parseInt(args[2]));
+            return;
+        }
+        if (args.length == 0 || !args[0].equals("coordinator")) {
+            System.err.println("usage: Sweep coordinator --log file [--workers n] [--port p] [--bind address]"
+                    + " [--budget ms] [--timeout ms] [--shard size] task...\n       Sweep worker host port");
+            return;
+        }
+        File logFile = null;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int port = 0;
+        InetAddress bind = InetAddress.getLoopbackAddress();
+        long budget = DEFAULT_BUDGET_MILLIS;
+        long timeout = 0;
+        int shardSize = 0;
+        List<String> tasks = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--log":
+                    logFile = new File(args[++i]);
+                    break;
+                case "--workers":
+                    workers = Integer.parseInt(args[++i]);
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--bind":
+                    bind = InetAddress.getByName(args[++i]);
+                    break;
+                case "--budget":
+                    budget = Long.parseLong(args[++i]);
+                    break;
+                case "--timeout":
+                    timeout = Long.parseLong(args[++i]);
+                    break;
+                case "--shard":
+                    shardSize = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    if (args[i].startsWith("@")) {
+                        for (String line : Files.readAllLines(new File(args[i].substring(1)).toPath(), StandardCharsets.UTF_8)) {
+                            if (!line.trim().isEmpty()) {
+                                tasks.add(line.trim());
+                            }
+                        }
+                    } else {
+                        tasks.add(args[i]);
+                    }
+            }
+        }
+        if (logFile == null) {
+            System.err.println("--log is required");
+            return;
+        }
+        if (timeout <= 0) {
+            timeout = 4 * budget + LOAD_ALLOWANCE_MILLIS;
+        }
+        if (!coordinate(logFile, tasks, workers, port, bind, budget, timeout, shardSize)) {
+            System.exit(1);
+        }
+    }
+}